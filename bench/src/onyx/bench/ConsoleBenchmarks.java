@@ -0,0 +1,52 @@
+package onyx.bench;
+
+import onyx.telemetry.ConsoleTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Console logging into a console of capacity 1000, one entry at a time and in batches of 100.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ConsoleBenchmarks {
+    private final String[] lines = new String[100];
+    private final double[] times = new double[100];
+    private ConsoleTelemetry console;
+    private int n;
+
+    @Setup
+    public void setUp() {
+        console = new ConsoleTelemetry(10, 10, true, Dashboards.renderer().fontMetrics(), "Console", 1000);
+
+        for (int i = 0; i < lines.length; i++)
+            lines[i] = "!centry #b" + i;
+    }
+
+    @Benchmark
+    public void log() {
+        console.log(lines[n & 63], n++ * 0.001);
+    }
+
+    @Benchmark
+    public void logAll() {
+        for (int i = 0; i < times.length; i++)
+            times[i] = n++ * 0.001;
+
+        console.logAll(lines, times);
+    }
+}
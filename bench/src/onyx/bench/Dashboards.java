@@ -0,0 +1,70 @@
+package onyx.bench;
+
+import onyx.graphics.FrameRenderer;
+import onyx.graphics.Theme;
+import onyx.telemetry.GraphTelemetry;
+
+import java.text.DecimalFormat;
+
+/**
+ * Shared settings and module factories for the benchmarks.
+ */
+final class Dashboards {
+    static final int WIDTH = 1280, HEIGHT = 720, FONT_SIZE = 12;
+    static final String FONT_NAME = "Monospaced";
+    static final String CODED_LINE = "#b!gThrust#p: !{lb}1824.5 kN !w(#inominal#p) !rT+00:12.031";
+
+    // Do not construct
+    private Dashboards() {
+    }
+
+    /**
+     * Creates a renderer with the benchmark font and theme.
+     *
+     * @return empty renderer
+     */
+    static FrameRenderer renderer() {
+        return new FrameRenderer(FONT_SIZE, FONT_NAME, Theme.DARK);
+    }
+
+    /**
+     * Creates graph parameters for a 0 to 100 window at some position.
+     *
+     * @param x      horizontal position from interface left
+     * @param y      vertical position from interface top
+     * @param width  graph width in pixels
+     * @param height graph height in pixels
+     * @return graph parameters
+     */
+    static GraphTelemetry.Parameters graphParameters(int x, int y, int width, int height) {
+        FrameRenderer renderer = renderer();
+        GraphTelemetry.Parameters p = new GraphTelemetry.Parameters();
+        p.x = x;
+        p.y = y;
+        p.width = width;
+        p.height = height;
+        p.theme = Theme.DARK;
+        p.fontMetrics = renderer.fontMetrics();
+        p.font = renderer.font();
+        p.xAxisLower = 0;
+        p.xAxisUpper = 100;
+        p.xAxisInterval = 10;
+        p.xFormat = new DecimalFormat("0");
+        p.xAxisLabel = "t (s)";
+        p.yAxisLower = 0;
+        p.yAxisUpper = 100;
+        p.yAxisInterval = 25;
+        p.yFormat = new DecimalFormat("0");
+        p.yAxisLabel = "Signal";
+        return p;
+    }
+
+    /**
+     * Creates an empty graph at the default position.
+     *
+     * @return empty graph
+     */
+    static GraphTelemetry graph() {
+        return new GraphTelemetry(graphParameters(600, 10, 600, 300));
+    }
+}
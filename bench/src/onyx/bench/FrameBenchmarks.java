@@ -0,0 +1,140 @@
+package onyx.bench;
+
+import onyx.graphics.FrameRenderer;
+import onyx.telemetry.ConsoleTelemetry;
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.ValueMapTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.FontMetrics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full frames rendered to an offscreen image.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmarks {
+    /**
+     * A value map, a console and a graph, all changed every frame.
+     */
+    @State(Scope.Thread)
+    public static class Dashboard {
+        FrameRenderer renderer;
+        ValueMapTelemetry values;
+        ConsoleTelemetry console;
+        GraphTelemetry graph;
+        int n;
+
+        @Setup
+        public void setUp() {
+            renderer = Dashboards.renderer();
+            FontMetrics fm = renderer.fontMetrics();
+            values = new ValueMapTelemetry(10, 10, true, fm, "#bValues");
+            console = new ConsoleTelemetry(10, 400, true, fm, "#bConsole", 15);
+            graph = Dashboards.graph();
+            graph.setPlotMode(GraphTelemetry.PLOT_MODE_CONNECT);
+            renderer.addTelemetry("values", values);
+            renderer.addTelemetry("console", console);
+            renderer.addTelemetry("graph", graph);
+        }
+    }
+
+    /**
+     * A wall of 24 graphs and 16 value maps, all changed every frame, drawn on some number of threads.
+     */
+    @State(Scope.Thread)
+    public static class Wall {
+        // 0 renders on every core
+        @Param({"1", "0"})
+        int threads;
+
+        FrameRenderer renderer;
+        GraphTelemetry[] graphs = new GraphTelemetry[24];
+        ValueMapTelemetry[] maps = new ValueMapTelemetry[16];
+        int n;
+
+        @Setup
+        public void setUp() {
+            renderer = Dashboards.renderer();
+            renderer.setRenderThreads(threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors()));
+            FontMetrics fm = renderer.fontMetrics();
+
+            for (int i = 0; i < graphs.length; i++) {
+                graphs[i] = new GraphTelemetry(Dashboards.graphParameters(i % 6 * 210, 200 + i / 6 * 125, 200, 120));
+                graphs[i].setPlotMode(GraphTelemetry.PLOT_MODE_CONNECT);
+                renderer.addTelemetry("graph" + i, graphs[i]);
+            }
+
+            for (int i = 0; i < maps.length; i++) {
+                maps[i] = new ValueMapTelemetry(10 + i % 8 * 155, 20 + i / 8 * 90, true, fm, "#bValues " + i);
+                renderer.addTelemetry("values" + i, maps[i]);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            renderer.setRenderThreads(1);
+        }
+    }
+
+    /**
+     * A value map and a graph that never change after the first frame.
+     */
+    @State(Scope.Thread)
+    public static class Static {
+        FrameRenderer renderer;
+
+        @Setup
+        public void setUp() {
+            renderer = Dashboards.renderer();
+            renderer.addTelemetry("values", new ValueMapTelemetry(10, 10, true, renderer.fontMetrics(), "#bValues"));
+            renderer.addTelemetry("graph", Dashboards.graph());
+            renderer.render(Dashboards.WIDTH, Dashboards.HEIGHT);
+        }
+    }
+
+    @Benchmark
+    public boolean dashboardAllDirty(Dashboard s) {
+        for (int i = 0; i < 20; i++)
+            s.values.put("!gchannel " + i, s.n + i);
+
+        s.console.log("!cframe " + s.n, s.n);
+        s.graph.addPoint(s.n % 10_000 * 0.01, Math.sin(s.n * 0.05) * 50 + 50, s.n % 10_000 == 0);
+        s.n++;
+        return s.renderer.render(Dashboards.WIDTH, Dashboards.HEIGHT);
+    }
+
+    @Benchmark
+    public boolean wallAllDirty(Wall s) {
+        for (GraphTelemetry graph : s.graphs)
+            graph.addPoint(s.n % 1_000 * 0.1, Math.sin(s.n * 0.05) * 50 + 50, s.n % 1_000 == 0);
+
+        for (ValueMapTelemetry values : s.maps)
+            for (int i = 0; i < 4; i++)
+                values.putDouble("!gchannel " + i, s.n + i * 0.5);
+
+        s.n++;
+        return s.renderer.render(Dashboards.WIDTH, Dashboards.HEIGHT);
+    }
+
+    @Benchmark
+    public boolean dashboardNothingDirty(Static s) {
+        return s.renderer.render(Dashboards.WIDTH, Dashboards.HEIGHT);
+    }
+}
@@ -0,0 +1,89 @@
+package onyx.bench;
+
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.ScrollingGraphTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph point insertion and rendering at several series sizes. Every measurement sees a series of exactly the
+ * parameterized size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraphBenchmarks {
+    /**
+     * A graph whose series starts over each time it reaches the parameterized size.
+     */
+    @State(Scope.Thread)
+    public static class Insertion {
+        @Param({"1000", "100000", "1000000"})
+        int size;
+
+        GraphTelemetry graph;
+        int n;
+
+        @Setup
+        public void setUp() {
+            graph = Dashboards.graph();
+        }
+    }
+
+    /**
+     * A scrolling graph holding the parameterized number of points in a ring buffer, so its series stays that size
+     * however many points are added.
+     */
+    @State(Scope.Thread)
+    public static class Rendering {
+        @Param({"1000", "100000", "1000000"})
+        int size;
+
+        GraphTelemetry graph;
+        double step;
+        long n;
+
+        @Setup
+        public void setUp() {
+            graph = new ScrollingGraphTelemetry(Dashboards.graphParameters(600, 10, 600, 300), size);
+            // The window spans the whole series
+            step = 100.0 / size;
+
+            for (; n < size; n++)
+                graph.addPoint(n * step, Math.sin(n * 0.01) * 50 + 50, false);
+
+            graph.render();
+        }
+    }
+
+    @Benchmark
+    public void addPoint(Insertion s) {
+        s.graph.addPoint(s.n * 100.0 / s.size, Math.sin(s.n * 0.01) * 50 + 50, s.n == 0);
+        s.n = (s.n + 1) % s.size;
+    }
+
+    /**
+     * A thousand new points per frame.
+     */
+    @Benchmark
+    public BufferedImage render(Rendering s) {
+        for (int i = 0; i < 1000; i++, s.n++)
+            s.graph.addPoint(s.n * s.step, Math.sin(s.n * 0.01) * 50 + 50, false);
+
+        return s.graph.render();
+    }
+}
@@ -0,0 +1,68 @@
+package onyx.bench;
+
+import onyx.ingest.FieldType;
+import onyx.ingest.PacketSchema;
+import onyx.ingest.TelemetryReceiver;
+import onyx.telemetry.ValueMapTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary packet decoding: a datagram of 40 packets, each with 4 fields bound to a value map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class IngestBenchmarks {
+    private final ByteBuffer packets = ByteBuffer.allocateDirect(40 * 20);
+    private TelemetryReceiver receiver;
+
+    @Setup
+    public void setUp() throws IOException {
+        PacketSchema schema = new PacketSchema("nav", 20, ByteOrder.BIG_ENDIAN);
+        schema.setIdentifier(0, FieldType.UINT16, 0xA1);
+        schema.addField("seq", 2, FieldType.UINT16);
+        schema.addField("altitude", 4, FieldType.INT32, 0.01, 0);
+        schema.addField("velocity", 8, FieldType.FLOAT32);
+        schema.addField("time", 12, FieldType.FLOAT64);
+
+        ValueMapTelemetry values = new ValueMapTelemetry(10, 10, false, Dashboards.renderer().fontMetrics(), "Values");
+        schema.bind("seq", values);
+        schema.bind("altitude", values);
+        schema.bind("velocity", values);
+        schema.bind("time", values);
+        receiver = new TelemetryReceiver(DatagramChannel.open(), schema);
+
+        for (int i = 0; i < 40; i++)
+            packets.putShort((short) 0xA1).putShort((short) i).putInt(i * 100).putFloat(i).putDouble(i * 0.1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        receiver.close();
+    }
+
+    @Benchmark
+    public int decode() {
+        packets.position(0);
+        return receiver.decode(packets);
+    }
+}
@@ -0,0 +1,61 @@
+package onyx.bench;
+
+import onyx.graphics.FrameRenderer;
+import onyx.graphics.TextFormatter;
+import onyx.telemetry.ParagraphTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metacode text compilation, and drawing a paragraph whose every line changes each frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TextBenchmarks {
+    private TextFormatter formatter;
+    private FrameRenderer renderer;
+    private ParagraphTelemetry paragraph;
+    private int n;
+
+    @Setup
+    public void setUp() {
+        renderer = Dashboards.renderer();
+        formatter = new TextFormatter(renderer.font());
+
+        String[] lines = new String[20];
+        Arrays.fill(lines, Dashboards.CODED_LINE);
+        paragraph = new ParagraphTelemetry(10, 10, true, renderer.fontMetrics(), "#bParagraph", lines);
+        renderer.addTelemetry("par", paragraph);
+    }
+
+    @Benchmark
+    public int compile() {
+        return formatter.compile(Dashboards.CODED_LINE).width();
+    }
+
+    /**
+     * Twenty changed coded lines per frame.
+     */
+    @Benchmark
+    public boolean renderChangedLines() {
+        for (int i = 0; i < 20; i++)
+            paragraph.setLine(i, Dashboards.CODED_LINE + (n++ & 7));
+
+        return renderer.render(Dashboards.WIDTH, Dashboards.HEIGHT);
+    }
+}
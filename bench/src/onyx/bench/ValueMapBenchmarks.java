@@ -0,0 +1,62 @@
+package onyx.bench;
+
+import onyx.telemetry.ValueMapTelemetry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.FontMetrics;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value map updates across 100 formatted labels, put by label and set through handles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ValueMapBenchmarks {
+    private final String[] labels = new String[100];
+    private final int[] handles = new int[100];
+    private ValueMapTelemetry putValues, setValues;
+    private int n;
+
+    @Setup
+    public void setUp() {
+        FontMetrics fm = Dashboards.renderer().fontMetrics();
+        putValues = new ValueMapTelemetry(10, 10, true, fm, "Values");
+        setValues = new ValueMapTelemetry(10, 10, true, fm, "Values");
+
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = "!bchannel " + i + "!w";
+            putValues.addDecimalFormat(labels[i], new DecimalFormat("0000.000"));
+            putValues.put(labels[i], 0.0);
+            setValues.addDecimalFormat(labels[i], new DecimalFormat("0000.000"));
+            handles[i] = setValues.register(labels[i]);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        putValues.put(labels[n % labels.length], n++ * 0.5);
+    }
+
+    /**
+     * Values are formatted when a frame reads them, so a frame reads the map every 100 sets.
+     */
+    @Benchmark
+    public int set() {
+        setValues.set(handles[n % handles.length], n++ * 0.5);
+        return n % handles.length == 0 ? setValues.data().length : 0;
+    }
+}
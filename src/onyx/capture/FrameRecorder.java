@@ -0,0 +1,182 @@
+package onyx.capture;
+
+import onyx.graphics.FrameListener;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records rendered frames by encoding them on a background thread pool. Register a recorder with
+ * {@link onyx.graphics.Display#addFrameListener(FrameListener)} to record everything the display draws.
+ * <p>
+ * Each frame is copied into one of a fixed number of pooled images and handed to the pool for encoding. If every
+ * pooled image is still waiting to be encoded, the frame is dropped rather than stalling the rendering thread. Dropped
+ * frames are counted in {@link #droppedFrames()}, and do not consume a sequence number.
+ */
+public abstract class FrameRecorder implements FrameListener, AutoCloseable {
+    private final ArrayBlockingQueue<BufferedImage> freeImages;
+    private final ExecutorService encoders;
+    private final AtomicLong failedFrames = new AtomicLong();
+    private final boolean changesOnly;
+    private final int queueCapacity;
+    private int allocatedImages;
+    // Only written by the rendering thread
+    private volatile long sequence, droppedFrames;
+    private volatile boolean closed;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param queueCapacity maximum number of frames waiting to be encoded before frames are dropped
+     * @param threads       number of encoding threads
+     * @param changesOnly   whether or not to skip frames identical to the previous one
+     */
+    protected FrameRecorder(int queueCapacity, int threads, boolean changesOnly) {
+        freeImages = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.changesOnly = changesOnly;
+        encoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Onyx frame encoder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Copies a completed frame and queues it for encoding, or drops it if the encoders are behind.
+     *
+     * @param frame   completed frame
+     * @param changed whether or not any part of the frame changed since the previous one
+     */
+    @Override
+    public void frameRendered(BufferedImage frame, boolean changed) {
+        if (closed || (changesOnly && !changed && sequence > 0))
+            return;
+
+        BufferedImage copy = acquireImage(frame);
+
+        if (copy == null) {
+            droppedFrames++;
+            return;
+        }
+
+        frame.copyData(copy.getRaster());
+
+        // Closing shuts the pool down under the same lock, so a frame is never handed to a stopped pool
+        synchronized (encoders) {
+            if (closed) {
+                freeImages.offer(copy);
+                return;
+            }
+
+            long frameSequence = sequence++;
+
+            encoders.execute(() -> {
+                try {
+                    encode(copy, frameSequence);
+                } catch (IOException e) {
+                    failedFrames.incrementAndGet();
+                } finally {
+                    freeImages.offer(copy);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets a pooled image matching a frame, allocating one if the pool has not reached capacity.
+     *
+     * @param frame frame to be copied
+     * @return image to copy into, or null if every pooled image is in use
+     */
+    private BufferedImage acquireImage(BufferedImage frame) {
+        BufferedImage image = freeImages.poll();
+
+        // Pooled images from before a resize are discarded
+        while (image != null && (image.getWidth() != frame.getWidth() || image.getHeight() != frame.getHeight())) {
+            allocatedImages--;
+            image = freeImages.poll();
+        }
+
+        if (image == null && allocatedImages < queueCapacity) {
+            allocatedImages++;
+            image = new BufferedImage(frame.getWidth(), frame.getHeight(), frame.getType());
+        }
+
+        return image;
+    }
+
+    /**
+     * Encodes and writes a single frame. Called on an encoding thread; frames may be encoded concurrently and out of
+     * order.
+     *
+     * @param frame    frame copy, owned by the recorder until this returns
+     * @param sequence zero-based index of the frame among recorded frames
+     * @throws IOException if the frame could not be written
+     */
+    protected abstract void encode(BufferedImage frame, long sequence) throws IOException;
+
+    /**
+     * Called once every queued frame has been encoded, to finalize the output.
+     *
+     * @throws IOException if the output could not be finalized
+     */
+    protected void finish() throws IOException {
+    }
+
+    /**
+     * Stops accepting frames, waits for queued frames to be encoded, and finalizes the output.
+     *
+     * @throws IOException if the output could not be finalized
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (encoders) {
+            if (closed)
+                return;
+
+            closed = true;
+            encoders.shutdown();
+        }
+
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        finish();
+    }
+
+    /**
+     * Gets the number of frames accepted for encoding.
+     *
+     * @return recorded frame count
+     */
+    public long recordedFrames() {
+        return sequence;
+    }
+
+    /**
+     * Gets the number of frames dropped because the encoders fell behind.
+     *
+     * @return dropped frame count
+     */
+    public long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Gets the number of frames that could not be written.
+     *
+     * @return failed frame count
+     */
+    public long failedFrames() {
+        return failedFrames.get();
+    }
+}
@@ -0,0 +1,137 @@
+package onyx.capture;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * Records frames as a Motion JPEG stream: consecutive JPEG images in one file, playable by common video tools (e.g.
+ * {@code ffplay -f mjpeg}). Frames are compressed in parallel and written to the file in order.
+ */
+public class MjpegRecorder extends FrameRecorder {
+    private final OutputStream out;
+    private final float quality;
+    // Frames compressed ahead of an earlier frame wait here until it is written
+    private final HashMap<Long, byte[]> pending = new HashMap<>();
+    private long nextToWrite;
+    private IOException writeError;
+
+    /**
+     * Creates a recorder writing to a file.
+     *
+     * @param file          output file, overwritten if it exists
+     * @param quality       JPEG compression quality from 0 to 1
+     * @param queueCapacity maximum number of frames waiting to be encoded before frames are dropped
+     * @param threads       number of encoding threads
+     * @throws IOException if the file could not be opened
+     */
+    public MjpegRecorder(File file, float quality, int queueCapacity, int threads) throws IOException {
+        this(file, quality, queueCapacity, threads, false);
+    }
+
+    /**
+     * Creates a recorder writing to a file that may leave out frames identical to the previous one. Motion JPEG has no
+     * timestamps, so a stream without its unchanged frames plays back faster than it was recorded.
+     *
+     * @param file          output file, overwritten if it exists
+     * @param quality       JPEG compression quality from 0 to 1
+     * @param queueCapacity maximum number of frames waiting to be encoded before frames are dropped
+     * @param threads       number of encoding threads
+     * @param changesOnly   whether or not to skip frames identical to the previous one
+     * @throws IOException if the file could not be opened
+     */
+    public MjpegRecorder(File file, float quality, int queueCapacity, int threads, boolean changesOnly)
+            throws IOException {
+        super(queueCapacity, threads, changesOnly);
+        out = new BufferedOutputStream(new FileOutputStream(file));
+        this.quality = quality;
+    }
+
+    /**
+     * Compresses a frame and writes it, along with any later frames that were waiting on it.
+     *
+     * @param frame    frame copy
+     * @param sequence zero-based frame index
+     * @throws IOException if the frame could not be compressed or written
+     */
+    @Override
+    protected void encode(BufferedImage frame, long sequence) throws IOException {
+        byte[] jpeg;
+        IOException compressError = null;
+
+        // A frame that fails to compress still takes its place in the sequence, as an empty write
+        try {
+            jpeg = compress(frame);
+        } catch (IOException e) {
+            jpeg = new byte[0];
+            compressError = e;
+        }
+
+        synchronized (pending) {
+            pending.put(sequence, jpeg);
+
+            while ((jpeg = pending.remove(nextToWrite)) != null) {
+                nextToWrite++;
+
+                // Keep sequencing after a failed write so later frames are not held forever
+                if (writeError == null) {
+                    try {
+                        out.write(jpeg);
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+            }
+
+            if (writeError != null)
+                throw writeError;
+        }
+
+        if (compressError != null)
+            throw compressError;
+    }
+
+    /**
+     * Compresses a frame to JPEG at the configured quality.
+     *
+     * @param frame frame image
+     * @return JPEG bytes
+     * @throws IOException if compression failed
+     */
+    private byte[] compress(BufferedImage frame) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(frame, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Flushes and closes the output file.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    protected void finish() throws IOException {
+        out.close();
+    }
+}
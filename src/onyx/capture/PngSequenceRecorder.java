@@ -0,0 +1,61 @@
+package onyx.capture;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records frames as a numbered sequence of PNG files. Frames are independent, so they are encoded in parallel.
+ */
+public class PngSequenceRecorder extends FrameRecorder {
+    private final File directory;
+    private final String prefix;
+
+    /**
+     * Creates a recorder writing files named {@code <prefix>000000.png}, {@code <prefix>000001.png}, and so on.
+     *
+     * @param directory     output directory, created if it does not exist
+     * @param prefix        file name prefix
+     * @param queueCapacity maximum number of frames waiting to be encoded before frames are dropped
+     * @param threads       number of encoding threads
+     * @throws IOException if the output directory could not be created
+     */
+    public PngSequenceRecorder(File directory, String prefix, int queueCapacity, int threads) throws IOException {
+        this(directory, prefix, queueCapacity, threads, false);
+    }
+
+    /**
+     * Creates a recorder that may leave out frames identical to the previous one, so a mostly static display writes a
+     * file only when something changes. Skipped frames do not consume a file number.
+     *
+     * @param directory     output directory, created if it does not exist
+     * @param prefix        file name prefix
+     * @param queueCapacity maximum number of frames waiting to be encoded before frames are dropped
+     * @param threads       number of encoding threads
+     * @param changesOnly   whether or not to skip frames identical to the previous one
+     * @throws IOException if the output directory could not be created
+     */
+    public PngSequenceRecorder(File directory, String prefix, int queueCapacity, int threads, boolean changesOnly)
+            throws IOException {
+        super(queueCapacity, threads, changesOnly);
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("could not create directory " + directory);
+
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Writes a frame to its numbered file.
+     *
+     * @param frame    frame copy
+     * @param sequence zero-based frame index
+     * @throws IOException if the file could not be written
+     */
+    @Override
+    protected void encode(BufferedImage frame, long sequence) throws IOException {
+        ImageIO.write(frame, "png", new File(directory, String.format("%s%06d.png", prefix, sequence)));
+    }
+}
@@ -0,0 +1,54 @@
+package onyx.capture;
+
+import java.nio.file.Path;
+
+/**
+ * The on-disk layout shared by {@link TelemetryRecorder} and {@link TelemetryReplay}. A recording is a directory
+ * holding:
+ * <ul>
+ * <li>segment files of records, each a fixed size and memory-mapped. A record is a type byte, a 16-bit module id and
+ * a 64-bit time in nanoseconds since recording began, followed by a payload that depends on the type. A zero type byte
+ * ends a segment.</li>
+ * <li>a names file, beginning with {@link #MAGIC} and the segment size, then mapping module ids to module identifiers
+ * and name ids to value labels and series names. Each entry is a name kind byte, a 16-bit id and a string.</li>
+ * <li>a sparse index of (time, segment, offset, history) entries, at most a second of recording apart, each pointing at
+ * the start of a record. Each entry is followed in the log by a keyframe: a value record for every value map label
+ * holding a value at that time. The history is the number of an earlier entry: playing only the console entries and
+ * graph points from there up to this entry refills every console and graph series as it was at this entry. For
+ * consoles and graphs with a capacity, it is far enough back to hold that many lines or points; for graphs that keep
+ * every point, it is the entry before their last clean point, or the first entry.</li>
+ * </ul>
+ * Numbers are big-endian, and strings are UTF-8 with a 32-bit length.
+ */
+class TelemetryLog {
+    static final long MAGIC = 0x4F4E59584C4F4732L;
+
+    // Record types
+    static final byte END = 0, VALUE_DOUBLE = 1, VALUE_LONG = 2, VALUE_BOOLEAN = 3, VALUE_TEXT = 4, POINT = 5,
+            LINE = 6;
+    // Type, module and time
+    static final int HEADER = 11;
+    // Name kinds
+    static final byte MODULE_NAME = 1, LABEL_NAME = 2;
+    // Time, segment, offset and history entry
+    static final int INDEX_ENTRY = 20;
+    static final long INDEX_INTERVAL = 1_000_000_000L;
+    static final int MAX_IDS = 65536;
+
+    static final String NAMES = "names.bin", INDEX = "index.bin";
+
+    // Do not construct
+    private TelemetryLog() {
+    }
+
+    /**
+     * Gets the path of a segment file.
+     *
+     * @param directory recording directory
+     * @param number    segment number
+     * @return segment path
+     */
+    static Path segment(Path directory, int number) {
+        return directory.resolve(String.format("segment-%06d.bin", number));
+    }
+}
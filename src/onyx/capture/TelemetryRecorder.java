@@ -0,0 +1,926 @@
+package onyx.capture;
+
+import onyx.graphics.Display;
+import onyx.graphics.FrameRenderer;
+import onyx.telemetry.ConsoleTelemetry;
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.Telemetry;
+import onyx.telemetry.UpdateListener;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records every update made to telemetry modules into a binary log, for playback with {@link TelemetryReplay}. Value
+ * map values, graph points and console entries are recorded along with the time they were made.
+ * <p>
+ * Updating threads never touch the log. Each update is copied into an in-memory ring, claimed with a single
+ * compare-and-set so that no lock is taken, and a recorder thread moves records from the ring into fixed-size,
+ * memory-mapped segment files. The recorder thread also maps new segments, flushes finished ones to disk, and every
+ * second of recording writes a sparse index entry and a keyframe of the current value map values, so a replay can seek
+ * without reading the log from the start. Each index entry also points back at the entry a replay must start from to
+ * refill every console and graph, which the recorder works out from the capacity of each module. Numeric updates are
+ * recorded without allocating.
+ * <p>
+ * Updates that could not be recorded, such as a record larger than a segment, one made while the ring was full, or one
+ * made after a write error, are counted in {@link #droppedRecords()}.
+ */
+public class TelemetryRecorder implements UpdateListener, AutoCloseable {
+    /**
+     * Default size of the ring between updating threads and the recorder thread, in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final VarHandle TAIL, LENGTH;
+    // Set in the claim counter once the recorder is closed, so no record is claimed after the ring is drained
+    private static final long CLOSED = Long.MIN_VALUE;
+    // Ring records are aligned so that their length words can be read and written atomically
+    private static final int ALIGNMENT = 8;
+    private static final long IDLE_NANOS = 1_000_000L;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(TelemetryRecorder.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        LENGTH = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    }
+
+    private final Path directory;
+    private final int segmentSize, maxRecord;
+    private final long startNanos = System.nanoTime();
+    private final FileChannel names, index;
+    private volatile IdentityHashMap<Telemetry, Integer> moduleIds = new IdentityHashMap<>();
+    // Lines or points kept by each module, by module id
+    private volatile long[] capacities = new long[0];
+    private final ConcurrentHashMap<String, Integer> labelIds = new ConcurrentHashMap<>();
+    // Records waiting for the recorder thread: a length word, then the record as it appears in the log
+    private final byte[] ring;
+    private final ByteBuffer ringBuffer;
+    private final Thread thread;
+    // Bytes ever claimed, with CLOSED set once closed, and bytes ever consumed by the recorder thread
+    private volatile long tail, head;
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private volatile long records;
+    private volatile IOException failure;
+    private boolean closed;
+
+    // Recorder thread state: the current segment, and the latest value of each value map label for keyframes
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(TelemetryLog.INDEX_ENTRY);
+    private final ArrayList<KeyValue> keyValues = new ArrayList<>();
+    private KeyValue[][] keyValuesByModule = new KeyValue[0][];
+    // Console entries and graph points of each module, by module id and, for graphs, series name id
+    private final ArrayList<History> histories = new ArrayList<>();
+    private History[] consoleHistories = new History[0];
+    private History[][] seriesHistories = new History[0][];
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1, indexEntries;
+    private long lastTime, lastIndexTime = Long.MIN_VALUE;
+
+    /**
+     * The latest value of a value map label.
+     */
+    private static class KeyValue {
+        final int module, label;
+        byte type;
+        long bits;
+        byte[] text;
+
+        /**
+         * Creates an empty value.
+         *
+         * @param module module id
+         * @param label  label id
+         */
+        KeyValue(int module, int label) {
+            this.module = module;
+            this.label = label;
+        }
+    }
+
+    /**
+     * The console entries or graph points recorded for a console or graph series, tracked to find how far back a
+     * replay must start to refill it.
+     */
+    private static class History {
+        final long capacity;
+        long count;
+        // Index entries and the count recorded before each, oldest first; refilling starts at the first
+        final ArrayDeque<long[]> marks = new ArrayDeque<>();
+
+        /**
+         * Creates an empty history.
+         *
+         * @param capacity lines or points kept, or Long.MAX_VALUE if every point is kept
+         * @param entry    index entry before the first record
+         */
+        History(long capacity, int entry) {
+            this.capacity = capacity;
+            marks.add(new long[]{entry, 0});
+        }
+
+        /**
+         * Notes a new index entry, dropping older entries that are no longer needed to refill the module.
+         *
+         * @param entry index entry number
+         */
+        void mark(int entry) {
+            // Nothing is ever dropped from a graph that keeps every point
+            if (capacity == Long.MAX_VALUE)
+                return;
+
+            marks.addLast(new long[]{entry, count});
+
+            // The oldest entry is needed only while the next one does not reach back a full capacity
+            while (marks.size() > 1) {
+                long[] first = marks.pollFirst();
+
+                if (count - marks.peekFirst()[1] < capacity) {
+                    marks.addFirst(first);
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Starts over after a clean point, which wipes every earlier point.
+         *
+         * @param entry index entry before the clean point
+         */
+        void restart(int entry) {
+            marks.clear();
+            marks.add(new long[]{entry, count});
+        }
+
+        /**
+         * Gets the index entry refilling starts at.
+         *
+         * @return index entry number
+         */
+        int start() {
+            return (int) marks.peekFirst()[0];
+        }
+    }
+
+    /**
+     * Creates a recorder writing to a directory with a ring of the default size. The directory is created if it does
+     * not exist; an existing recording in it is overwritten.
+     *
+     * @param directory   recording directory
+     * @param segmentSize size of each segment file in bytes
+     * @throws IOException if the directory or its files could not be created
+     */
+    public TelemetryRecorder(Path directory, int segmentSize) throws IOException {
+        this(directory, segmentSize, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a recorder writing to a directory. The directory is created if it does not exist; an existing recording
+     * in it is overwritten.
+     *
+     * @param directory   recording directory
+     * @param segmentSize size of each segment file in bytes
+     * @param bufferSize  size of the ring between updating threads and the recorder thread in bytes, a power of two;
+     *                    updates are dropped while it is full, and a record may take at most half of it
+     * @throws IOException if the directory or its files could not be created
+     */
+    public TelemetryRecorder(Path directory, int segmentSize, int bufferSize) throws IOException {
+        if (segmentSize < 4096)
+            throw new IllegalArgumentException("Segments must be at least 4096 bytes");
+
+        if (bufferSize < 4096 || Integer.bitCount(bufferSize) != 1)
+            throw new IllegalArgumentException("Buffer size must be a power of two of at least 4096 bytes");
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        ring = new byte[bufferSize];
+        ringBuffer = ByteBuffer.wrap(ring);
+        // Leave room in a segment for the end marker, and in the ring for padding before a record
+        maxRecord = Math.min(segmentSize - 1, bufferSize / 2 - Integer.BYTES - ALIGNMENT);
+        Files.createDirectories(directory);
+
+        for (int i = 0; Files.deleteIfExists(TelemetryLog.segment(directory, i)); i++)
+            ;
+
+        names = FileChannel.open(directory.resolve(TelemetryLog.NAMES), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        index = FileChannel.open(directory.resolve(TelemetryLog.INDEX), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        header.putLong(TelemetryLog.MAGIC).putInt(segmentSize).flip();
+        writeFully(names, header);
+        nextSegment();
+
+        thread = new Thread(this::run, "Onyx telemetry recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records every telemetry module currently on a display.
+     *
+     * @param display display to record
+     */
+    public void attach(Display display) {
+        attach(display.renderer());
+    }
+
+    /**
+     * Records every telemetry module currently in a frame renderer.
+     *
+     * @param renderer renderer to record
+     */
+    public void attach(FrameRenderer renderer) {
+        for (String identifier : renderer.identifiers())
+            attach(identifier, renderer.getTelemetry(identifier));
+    }
+
+    /**
+     * Records the updates made to one telemetry module. The module's identifier is how a replay finds the module to
+     * update, so it should match the identifier it has on the replaying display.
+     *
+     * @param identifier identifying name
+     * @param tel        telemetry instance
+     */
+    public synchronized void attach(String identifier, Telemetry tel) {
+        if (!moduleIds.containsKey(tel)) {
+            if (moduleIds.size() == TelemetryLog.MAX_IDS)
+                throw new IllegalStateException("Too many modules recorded");
+
+            int id = moduleIds.size();
+            writeName(TelemetryLog.MODULE_NAME, id, identifier);
+
+            long[] nextCapacities = Arrays.copyOf(capacities, id + 1);
+            nextCapacities[id] = capacity(tel);
+            capacities = nextCapacities;
+
+            // Updating threads read the map without locking
+            IdentityHashMap<Telemetry, Integer> next = new IdentityHashMap<>(moduleIds);
+            next.put(tel, id);
+            moduleIds = next;
+        }
+
+        tel.setUpdateListener(this);
+    }
+
+    /**
+     * Gets the number of console entries or graph points a module keeps.
+     *
+     * @param tel telemetry instance
+     * @return capacity, Long.MAX_VALUE for a graph that keeps every point, or 0 for other modules
+     */
+    private static long capacity(Telemetry tel) {
+        if (tel instanceof ConsoleTelemetry)
+            return ((ConsoleTelemetry) tel).capacity();
+
+        if (tel instanceof GraphTelemetry) {
+            int capacity = ((GraphTelemetry) tel).capacity();
+            return capacity == -1 ? Long.MAX_VALUE : capacity;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Stops recording a telemetry module.
+     *
+     * @param tel telemetry instance
+     */
+    public void detach(Telemetry tel) {
+        if (tel.updateListener() == this)
+            tel.setUpdateListener(null);
+    }
+
+    @Override
+    public void valuePut(Telemetry source, String label, Object value) {
+        if (value instanceof Double || value instanceof Float)
+            valueSet(source, label, ((Number) value).doubleValue());
+        else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            valueSet(source, label, ((Number) value).longValue());
+        else if (value instanceof Boolean)
+            valueSet(source, label, ((Boolean) value).booleanValue());
+        else
+            recordText(source, label, String.valueOf(value));
+    }
+
+    @Override
+    public void valueSet(Telemetry source, String label, double value) {
+        recordNumber(source, label, TelemetryLog.VALUE_DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void valueSet(Telemetry source, String label, long value) {
+        recordNumber(source, label, TelemetryLog.VALUE_LONG, value);
+    }
+
+    @Override
+    public void valueSet(Telemetry source, String label, boolean value) {
+        Integer module = moduleIds.get(source);
+        int name = labelId(label);
+
+        if (module == null || name < 0)
+            return;
+
+        int at = claim(TelemetryLog.HEADER + Short.BYTES + 1);
+
+        if (at < 0)
+            return;
+
+        putHeader(at, TelemetryLog.VALUE_BOOLEAN, module);
+        ringBuffer.putShort(at + TelemetryLog.HEADER, (short) name);
+        ringBuffer.put(at + TelemetryLog.HEADER + Short.BYTES, (byte) (value ? 1 : 0));
+        commit(at, TelemetryLog.HEADER + Short.BYTES + 1);
+    }
+
+    @Override
+    public void pointAdded(Telemetry source, String series, double x, double y, boolean clean) {
+        Integer module = moduleIds.get(source);
+        int name = labelId(series);
+        int length = TelemetryLog.HEADER + Short.BYTES + 1 + 2 * Double.BYTES;
+
+        if (module == null || name < 0)
+            return;
+
+        int at = claim(length);
+
+        if (at < 0)
+            return;
+
+        putHeader(at, TelemetryLog.POINT, module);
+        int payload = at + TelemetryLog.HEADER;
+        ringBuffer.putShort(payload, (short) name);
+        ringBuffer.put(payload + Short.BYTES, (byte) (clean ? 1 : 0));
+        ringBuffer.putDouble(payload + Short.BYTES + 1, x);
+        ringBuffer.putDouble(payload + Short.BYTES + 1 + Double.BYTES, y);
+        commit(at, length);
+    }
+
+    @Override
+    public void lineLogged(Telemetry source, String line, double time) {
+        Integer module = moduleIds.get(source);
+
+        if (module == null)
+            return;
+
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        int length = TelemetryLog.HEADER + Double.BYTES + Integer.BYTES + text.length;
+        int at = claim(length);
+
+        if (at < 0)
+            return;
+
+        putHeader(at, TelemetryLog.LINE, module);
+        int payload = at + TelemetryLog.HEADER;
+        ringBuffer.putDouble(payload, time);
+        ringBuffer.putInt(payload + Double.BYTES, text.length);
+        ringBuffer.put(payload + Double.BYTES + Integer.BYTES, text);
+        commit(at, length);
+    }
+
+    /**
+     * Gets the number of updates written to the log.
+     *
+     * @return record count
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Gets the number of updates that could not be recorded.
+     *
+     * @return dropped record count
+     */
+    public long droppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * Gets the error that stopped the recorder, if any.
+     *
+     * @return write error, or null
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Stops recording, detaching from every recorded module, waits for the recorder thread to write every update
+     * already made, and flushes the log to disk.
+     *
+     * @throws IOException if the log could not be flushed or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+
+        for (Telemetry tel : moduleIds.keySet())
+            detach(tel);
+
+        // Updates racing with close either claimed their record before this or are dropped
+        TAIL.getAndBitwiseOr(this, CLOSED);
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            if (segment != null)
+                segment.force();
+        } finally {
+            names.close();
+            index.close();
+        }
+    }
+
+    /**
+     * Records a numeric value map value.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param type   value record type
+     * @param bits   raw value
+     */
+    private void recordNumber(Telemetry source, String label, byte type, long bits) {
+        Integer module = moduleIds.get(source);
+        int name = labelId(label);
+
+        if (module == null || name < 0)
+            return;
+
+        int at = claim(TelemetryLog.HEADER + Short.BYTES + Long.BYTES);
+
+        if (at < 0)
+            return;
+
+        putHeader(at, type, module);
+        ringBuffer.putShort(at + TelemetryLog.HEADER, (short) name);
+        ringBuffer.putLong(at + TelemetryLog.HEADER + Short.BYTES, bits);
+        commit(at, TelemetryLog.HEADER + Short.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Records a text value map value.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param text   value
+     */
+    private void recordText(Telemetry source, String label, String text) {
+        Integer module = moduleIds.get(source);
+        int name = labelId(label);
+
+        if (module == null || name < 0)
+            return;
+
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        int length = TelemetryLog.HEADER + Short.BYTES + Integer.BYTES + encoded.length;
+        int at = claim(length);
+
+        if (at < 0)
+            return;
+
+        putHeader(at, TelemetryLog.VALUE_TEXT, module);
+        int payload = at + TelemetryLog.HEADER;
+        ringBuffer.putShort(payload, (short) name);
+        ringBuffer.putInt(payload + Short.BYTES, encoded.length);
+        ringBuffer.put(payload + Short.BYTES + Integer.BYTES, encoded);
+        commit(at, length);
+    }
+
+    /**
+     * Claims room for a record in the ring. A record that would run past the end of the ring is placed at its start,
+     * after a padding entry the recorder thread skips.
+     *
+     * @param length record length
+     * @return index of the record in the ring, or -1 if it was dropped
+     */
+    private int claim(int length) {
+        int size = align(Integer.BYTES + length);
+
+        if (length > maxRecord || failure != null) {
+            droppedRecords.incrementAndGet();
+            return -1;
+        }
+
+        while (true) {
+            long claimed = tail;
+
+            if (claimed < 0) {
+                droppedRecords.incrementAndGet();
+                return -1;
+            }
+
+            int offset = (int) (claimed & (ring.length - 1));
+            int padding = offset + size > ring.length ? ring.length - offset : 0;
+
+            // Full; the recorder thread has fallen behind
+            if (claimed + padding + size - head > ring.length) {
+                droppedRecords.incrementAndGet();
+                return -1;
+            }
+
+            if (TAIL.compareAndSet(this, claimed, claimed + padding + size)) {
+                if (padding == 0)
+                    return offset + Integer.BYTES;
+
+                LENGTH.setRelease(ring, offset, -padding);
+                return Integer.BYTES;
+            }
+        }
+    }
+
+    /**
+     * Writes the header of a claimed record, stamping it with the current time.
+     *
+     * @param at     index of the record in the ring
+     * @param type   record type
+     * @param module module id
+     */
+    private void putHeader(int at, byte type, int module) {
+        ringBuffer.put(at, type);
+        ringBuffer.putShort(at + 1, (short) module);
+        ringBuffer.putLong(at + 1 + Short.BYTES, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Publishes a claimed record to the recorder thread.
+     *
+     * @param at     index of the record in the ring
+     * @param length record length
+     */
+    private void commit(int at, int length) {
+        LENGTH.setRelease(ring, at - Integer.BYTES, length);
+    }
+
+    /**
+     * Rounds a ring entry size up to the record alignment.
+     *
+     * @param size entry size
+     * @return aligned size
+     */
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Recorder loop. Records are written in the order they were claimed; each is waited for until it is published, and
+     * its bytes are cleared before they are handed back to updating threads.
+     */
+    private void run() {
+        while (true) {
+            long consumed = head;
+            int offset = (int) (consumed & (ring.length - 1));
+            int length = (int) LENGTH.getAcquire(ring, offset);
+
+            if (length == 0) {
+                long claimed = tail;
+
+                if (claimed < 0 && (claimed & ~CLOSED) == consumed)
+                    return;
+
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+
+            int size = length < 0 ? -length : align(Integer.BYTES + length);
+
+            if (length > 0)
+                write(offset + Integer.BYTES, length);
+
+            Arrays.fill(ring, offset, offset + size, (byte) 0);
+            head = consumed + size;
+        }
+    }
+
+    /**
+     * Copies a record from the ring into the log. Called by the recorder thread.
+     *
+     * @param at     index of the record in the ring
+     * @param length record length
+     */
+    private void write(int at, int length) {
+        if (failure != null) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        byte type = ring[at];
+        int module = Short.toUnsignedInt(ringBuffer.getShort(at + 1));
+        // Updates from different threads may be stamped a little out of order; keep the log monotonic
+        lastTime = Math.max(lastTime, ringBuffer.getLong(at + 1 + Short.BYTES));
+
+        try {
+            // The first record always starts with a keyframe
+            if (lastIndexTime == Long.MIN_VALUE || lastTime - lastIndexTime >= TelemetryLog.INDEX_INTERVAL)
+                writeKeyframe();
+
+            reserve(length);
+        } catch (IOException e) {
+            failure = e;
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        putHeader(type, module, lastTime);
+        segment.put(ring, at + TelemetryLog.HEADER, length - TelemetryLog.HEADER);
+        records++;
+
+        if (type >= TelemetryLog.VALUE_DOUBLE && type <= TelemetryLog.VALUE_TEXT) {
+            remember(type, module, at + TelemetryLog.HEADER);
+        } else if (type == TelemetryLog.LINE) {
+            history(module, -1).count++;
+        } else if (type == TelemetryLog.POINT) {
+            History history = history(module, Short.toUnsignedInt(ringBuffer.getShort(at + TelemetryLog.HEADER)));
+
+            if (ring[at + TelemetryLog.HEADER + Short.BYTES] != 0)
+                history.restart(indexEntries - 1);
+
+            history.count++;
+        }
+    }
+
+    /**
+     * Gets the history of a console or graph series, creating it at the current index entry if it is new.
+     *
+     * @param module module id
+     * @param series series name id, or -1 for a console
+     * @return history
+     */
+    private History history(int module, int series) {
+        History history;
+
+        if (series < 0) {
+            if (module >= consoleHistories.length)
+                consoleHistories = Arrays.copyOf(consoleHistories, module + 1);
+
+            history = consoleHistories[module];
+        } else {
+            if (module >= seriesHistories.length)
+                seriesHistories = Arrays.copyOf(seriesHistories, module + 1);
+
+            History[] named = seriesHistories[module];
+
+            if (named == null || series >= named.length)
+                named = seriesHistories[module] = Arrays.copyOf(named == null ? new History[0] : named,
+                        series + 1);
+
+            history = named[series];
+        }
+
+        if (history != null)
+            return history;
+
+        history = new History(capacities[module], indexEntries - 1);
+        histories.add(history);
+
+        if (series < 0)
+            consoleHistories[module] = history;
+        else
+            seriesHistories[module][series] = history;
+
+        return history;
+    }
+
+    /**
+     * Remembers a value map value for keyframes.
+     *
+     * @param type    value record type
+     * @param module  module id
+     * @param payload index of the record payload in the ring
+     */
+    private void remember(byte type, int module, int payload) {
+        int label = Short.toUnsignedInt(ringBuffer.getShort(payload));
+
+        if (module >= keyValuesByModule.length)
+            keyValuesByModule = Arrays.copyOf(keyValuesByModule, module + 1);
+
+        KeyValue[] labels = keyValuesByModule[module];
+
+        if (labels == null || label >= labels.length)
+            labels = keyValuesByModule[module] = Arrays.copyOf(labels == null ? new KeyValue[0] : labels, label + 1);
+
+        KeyValue value = labels[label];
+
+        if (value == null) {
+            value = labels[label] = new KeyValue(module, label);
+            keyValues.add(value);
+        }
+
+        value.type = type;
+        value.text = null;
+
+        if (type == TelemetryLog.VALUE_BOOLEAN) {
+            value.bits = ring[payload + Short.BYTES];
+        } else if (type == TelemetryLog.VALUE_TEXT) {
+            int start = payload + Short.BYTES + Integer.BYTES;
+            value.text = Arrays.copyOfRange(ring, start, start + ringBuffer.getInt(payload + Short.BYTES));
+        } else {
+            value.bits = ringBuffer.getLong(payload + Short.BYTES);
+        }
+    }
+
+    /**
+     * Writes an index entry pointing at the end of the log, followed by every remembered value map value. Called by
+     * the recorder thread.
+     *
+     * @throws IOException if a segment or the index could not be written
+     */
+    private void writeKeyframe() throws IOException {
+        lastIndexTime = lastTime;
+        reserve(TelemetryLog.HEADER + 1);
+
+        int entry = indexEntries, start = entry;
+
+        for (History history : histories) {
+            history.mark(entry);
+            start = Math.min(start, history.start());
+        }
+
+        indexEntry.clear();
+        indexEntry.putLong(lastTime).putInt(segmentNumber).putInt(segment.position()).putInt(start).flip();
+        writeFully(index, indexEntry);
+        indexEntries++;
+
+        for (KeyValue value : keyValues) {
+            reserve(TelemetryLog.HEADER + valueSize(value));
+            putValue(value, lastTime);
+        }
+    }
+
+    /**
+     * Moves to a new segment if the current one cannot hold a record and the end marker after it.
+     *
+     * @param size record size
+     * @throws IOException if a new segment could not be created
+     */
+    private void reserve(int size) throws IOException {
+        if (segment.remaining() <= size)
+            nextSegment();
+    }
+
+    /**
+     * Flushes the current segment to disk and maps a new, zero-filled segment file. Called by the recorder thread, or
+     * by the constructor before it starts.
+     *
+     * @throws IOException if the segment could not be created
+     */
+    private void nextSegment() throws IOException {
+        if (segment != null)
+            segment.force();
+
+        segmentNumber++;
+        Path path = TelemetryLog.segment(directory, segmentNumber);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Gets the size of a value record after its header.
+     *
+     * @param value remembered value
+     * @return payload size
+     */
+    private static int valueSize(KeyValue value) {
+        switch (value.type) {
+            case TelemetryLog.VALUE_BOOLEAN:
+                return Short.BYTES + 1;
+            case TelemetryLog.VALUE_TEXT:
+                return Short.BYTES + Integer.BYTES + value.text.length;
+            default:
+                return Short.BYTES + Long.BYTES;
+        }
+    }
+
+    /**
+     * Appends a value record to the segment. Room must already be reserved.
+     *
+     * @param value value to write
+     * @param time  record time
+     */
+    private void putValue(KeyValue value, long time) {
+        putHeader(value.type, value.module, time);
+        segment.putShort((short) value.label);
+
+        if (value.type == TelemetryLog.VALUE_BOOLEAN) {
+            segment.put((byte) value.bits);
+        } else if (value.type == TelemetryLog.VALUE_TEXT) {
+            segment.putInt(value.text.length);
+            segment.put(value.text);
+        } else {
+            segment.putLong(value.bits);
+        }
+    }
+
+    /**
+     * Appends a record header to the segment.
+     *
+     * @param type   record type
+     * @param module module id
+     * @param time   record time
+     */
+    private void putHeader(byte type, int module, long time) {
+        segment.put(type);
+        segment.putShort((short) module);
+        segment.putLong(time);
+    }
+
+    /**
+     * Gets the id of a value label or series name, assigning one if it is new. New names are written to the names file
+     * by the thread that first uses them, so ids are always written in order.
+     *
+     * @param name label or series name
+     * @return name id, or -1 if every id is taken
+     */
+    private int labelId(String name) {
+        Integer id = labelIds.get(name);
+
+        if (id != null)
+            return id;
+
+        synchronized (labelIds) {
+            id = labelIds.get(name);
+
+            if (id != null)
+                return id;
+
+            if (labelIds.size() == TelemetryLog.MAX_IDS || failure != null) {
+                droppedRecords.incrementAndGet();
+                return -1;
+            }
+
+            try {
+                writeName(TelemetryLog.LABEL_NAME, labelIds.size(), name);
+            } catch (IllegalStateException e) {
+                droppedRecords.incrementAndGet();
+                return -1;
+            }
+
+            labelIds.put(name, labelIds.size());
+            return labelIds.size() - 1;
+        }
+    }
+
+    /**
+     * Appends an entry to the names file.
+     *
+     * @param kind name kind
+     * @param id   id the name is given
+     * @param name module identifier, value label or series name
+     */
+    private void writeName(byte kind, int id, String name) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(1 + Short.BYTES + Integer.BYTES + encoded.length);
+        entry.put(kind).putShort((short) id).putInt(encoded.length).put(encoded).flip();
+
+        // Module and label names are written from different threads; keep each entry whole
+        synchronized (names) {
+            try {
+                writeFully(names, entry);
+            } catch (IOException e) {
+                failure = e;
+                throw new IllegalStateException("Could not write recording names", e);
+            }
+        }
+    }
+
+    /**
+     * Writes a whole buffer to a channel.
+     *
+     * @param channel destination channel
+     * @param buffer  bytes to write, from position to limit
+     * @throws IOException if the write failed
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
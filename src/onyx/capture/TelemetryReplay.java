@@ -0,0 +1,526 @@
+package onyx.capture;
+
+import onyx.graphics.Display;
+import onyx.graphics.FrameRenderer;
+import onyx.telemetry.ConsoleTelemetry;
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.Telemetry;
+import onyx.telemetry.ValueMapTelemetry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Plays a log written by {@link TelemetryRecorder} back into the telemetry modules of a display, finding each module
+ * by the identifier it was recorded under. Playback runs on a dedicated thread at any speed, and can be paused and
+ * moved with {@link #seek(double)}; {@link #playUntil(double)} steps through the log without a thread.
+ * <p>
+ * Segments are memory-mapped and read in place. Seeking looks up the nearest earlier keyframe in the log's sparse index
+ * and plays forward from it, so a seek reads about a second of value records however long the log is. Keyframes restore
+ * value map values exactly. Graphs and consoles are cleared whenever a seek jumps, then refilled by playing only their
+ * points and entries from the earlier index entry the keyframe points back at, which is far enough back to fill every
+ * console and every bounded graph; a graph that keeps every point is refilled from its last clean point.
+ */
+public class TelemetryReplay implements AutoCloseable {
+    private final Path directory;
+    private final FrameRenderer renderer;
+    private final int segmentSize;
+    private final ArrayList<String> moduleNames = new ArrayList<>(), labelNames = new ArrayList<>();
+    private final ByteBuffer index;
+    private final int indexEntries;
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private Telemetry[] modules = new Telemetry[0];
+    private Thread thread;
+    private volatile boolean playing;
+    private volatile IOException failure;
+    // Playback position, and the wall clock time it was at, in log nanoseconds
+    private long position, anchorNanos;
+    private double speed = 1;
+
+    /**
+     * Creates a paused replay at the start of a recording.
+     *
+     * @param directory recording directory
+     * @param display   display holding the modules to update
+     * @throws IOException if the recording could not be read
+     */
+    public TelemetryReplay(Path directory, Display display) throws IOException {
+        this(directory, display.renderer());
+    }
+
+    /**
+     * Creates a paused replay at the start of a recording.
+     *
+     * @param directory recording directory
+     * @param renderer  renderer holding the modules to update
+     * @throws IOException if the recording could not be read
+     */
+    public TelemetryReplay(Path directory, FrameRenderer renderer) throws IOException {
+        this.directory = directory;
+        this.renderer = renderer;
+
+        ByteBuffer names = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(TelemetryLog.NAMES)));
+
+        if (names.remaining() < Long.BYTES + Integer.BYTES || names.getLong() != TelemetryLog.MAGIC)
+            throw new IOException(directory + " is not a telemetry recording");
+
+        segmentSize = names.getInt();
+        readNames(names);
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(TelemetryLog.INDEX), StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            indexEntries = (int) (channel.size() / TelemetryLog.INDEX_ENTRY);
+        }
+
+        if (!openSegment(0, 0))
+            throw new NoSuchFileException(TelemetryLog.segment(directory, 0).toString());
+    }
+
+    /**
+     * Starts playing from the current position on a daemon thread. Does nothing if the replay is already playing.
+     */
+    public synchronized void start() {
+        if (playing)
+            return;
+
+        playing = true;
+        anchorNanos = System.nanoTime();
+        thread = new Thread(this::run, "Onyx telemetry replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Pauses playback and waits for the playing thread to exit. The position is kept.
+     */
+    public void pause() {
+        Thread playingThread;
+
+        synchronized (this) {
+            position = clock();
+            playing = false;
+            playingThread = thread;
+            thread = null;
+            notifyAll();
+        }
+
+        if (playingThread != null && Thread.currentThread() != playingThread) {
+            try {
+                playingThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops playback.
+     */
+    @Override
+    public void close() {
+        pause();
+    }
+
+    /**
+     * Sets the playback speed, relative to the speed the log was recorded at.
+     *
+     * @param speed speed multiplier, e.g. 10 to play ten times faster
+     */
+    public synchronized void setSpeed(double speed) {
+        if (!(speed > 0))
+            throw new IllegalArgumentException("Playback speed must be positive");
+
+        position = clock();
+        anchorNanos = System.nanoTime();
+        this.speed = speed;
+        notifyAll();
+    }
+
+    /**
+     * Gets the playback speed.
+     *
+     * @return speed multiplier
+     */
+    public synchronized double speed() {
+        return speed;
+    }
+
+    /**
+     * Gets the playback position.
+     *
+     * @return seconds since recording began
+     */
+    public synchronized double time() {
+        return clock() / 1e9;
+    }
+
+    /**
+     * Gets whether or not the replay is playing. Playback stops by itself at the end of the log.
+     *
+     * @return if records are being played
+     */
+    public boolean playing() {
+        return playing;
+    }
+
+    /**
+     * Gets the error that stopped playback, if any.
+     *
+     * @return read error, or null
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Moves playback to a time, forwards or backwards. Records from the nearest keyframe at or before the time are
+     * played immediately; if playing, playback carries on from the new position.
+     *
+     * @param seconds seconds since recording began
+     */
+    public synchronized void seek(double seconds) {
+        long target = Math.max(0, (long) (seconds * 1e9));
+        int entry = indexEntry(target);
+        long current = clock();
+
+        // Within the current keyframe interval, playing forward is cheaper than jumping
+        if (target < current || (entry >= 0 && index.getLong(entry * TelemetryLog.INDEX_ENTRY) > current)) {
+            for (int i = 0; i < moduleNames.size(); i++) {
+                if (module(i) instanceof GraphTelemetry)
+                    ((GraphTelemetry) module(i)).clear();
+                else if (module(i) instanceof ConsoleTelemetry)
+                    ((ConsoleTelemetry) module(i)).clear();
+            }
+
+            if (entry < 0)
+                openSegment(0, 0);
+            else
+                refill(entry);
+        }
+
+        playThrough(target);
+        position = target;
+        anchorNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    /**
+     * Plays every record up to a time immediately, ignoring the playback speed. Must not be called while playing.
+     *
+     * @param seconds seconds since recording began
+     */
+    public synchronized void playUntil(double seconds) {
+        long target = (long) (seconds * 1e9);
+
+        if (target > position) {
+            playThrough(target);
+            position = target;
+        }
+    }
+
+    /**
+     * Playing loop. Records are played once the playback clock reaches them, waiting between them otherwise.
+     */
+    private synchronized void run() {
+        try {
+            while (playing) {
+                long next = nextTime();
+
+                if (next < 0)
+                    break;
+
+                long wait = (long) ((next - clock()) / speed);
+
+                if (wait <= 0) {
+                    play(true);
+                } else {
+                    try {
+                        wait(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            position = clock();
+            playing = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gets the current playback position.
+     *
+     * @return log nanoseconds
+     */
+    private long clock() {
+        return playing ? position + (long) ((System.nanoTime() - anchorNanos) * speed) : position;
+    }
+
+    /**
+     * Plays every record up to a time.
+     *
+     * @param target log nanoseconds
+     */
+    private void playThrough(long target) {
+        try {
+            long next;
+
+            while ((next = nextTime()) >= 0 && next <= target)
+                play(true);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Plays the graph points and console entries leading up to an index entry, from the entry it points back at, and
+     * stops at its keyframe.
+     *
+     * @param entry entry number
+     */
+    private void refill(int entry) {
+        int at = entry * TelemetryLog.INDEX_ENTRY + Long.BYTES;
+        int number = index.getInt(at), offset = index.getInt(at + Integer.BYTES);
+        int history = index.getInt(at + 2 * Integer.BYTES) * TelemetryLog.INDEX_ENTRY + Long.BYTES;
+        openSegment(index.getInt(history), index.getInt(history + Integer.BYTES));
+
+        try {
+            // Value map values before the keyframe are all overwritten by it
+            while ((segmentNumber < number || (segmentNumber == number && segment.position() < offset))
+                    && nextTime() >= 0)
+                play(false);
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        openSegment(number, offset);
+    }
+
+    /**
+     * Finds the last index entry at or before a time.
+     *
+     * @param target log nanoseconds
+     * @return entry number, or -1 if every entry is later
+     */
+    private int indexEntry(long target) {
+        int low = 0, high = indexEntries - 1, found = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (index.getLong(mid * TelemetryLog.INDEX_ENTRY) <= target) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Gets the time of the next record, moving on to the next segment at the end of the current one.
+     *
+     * @return log nanoseconds, or -1 at the end of the log
+     */
+    private long nextTime() {
+        while (segment.remaining() < TelemetryLog.HEADER || segment.get(segment.position()) == TelemetryLog.END) {
+            if (!openSegment(segmentNumber + 1, 0))
+                return -1;
+        }
+
+        return segment.getLong(segment.position() + 1 + Short.BYTES);
+    }
+
+    /**
+     * Plays the next record into its module. Records for modules or names the display does not have are skipped.
+     *
+     * @param values whether or not to play value map records, rather than skip them
+     * @throws IOException if the record is corrupt
+     */
+    private void play(boolean values) throws IOException {
+        byte type = segment.get();
+        Telemetry tel = module(Short.toUnsignedInt(segment.getShort()));
+        segment.getLong();
+
+        switch (type) {
+            case TelemetryLog.VALUE_DOUBLE: {
+                String label = name(labelNames, segment.getShort());
+                double value = segment.getDouble();
+
+                if (values && tel instanceof ValueMapTelemetry && label != null)
+                    ((ValueMapTelemetry) tel).putDouble(label, value);
+
+                break;
+            }
+            case TelemetryLog.VALUE_LONG: {
+                String label = name(labelNames, segment.getShort());
+                long value = segment.getLong();
+
+                if (values && tel instanceof ValueMapTelemetry && label != null)
+                    ((ValueMapTelemetry) tel).putLong(label, value);
+
+                break;
+            }
+            case TelemetryLog.VALUE_BOOLEAN: {
+                String label = name(labelNames, segment.getShort());
+                boolean value = segment.get() != 0;
+
+                if (values && tel instanceof ValueMapTelemetry && label != null)
+                    ((ValueMapTelemetry) tel).putBoolean(label, value);
+
+                break;
+            }
+            case TelemetryLog.VALUE_TEXT: {
+                String label = name(labelNames, segment.getShort());
+                String value = readString(segment);
+
+                if (values && tel instanceof ValueMapTelemetry && label != null)
+                    ((ValueMapTelemetry) tel).put(label, value);
+
+                break;
+            }
+            case TelemetryLog.POINT: {
+                String series = name(labelNames, segment.getShort());
+                boolean clean = segment.get() != 0;
+                double x = segment.getDouble(), y = segment.getDouble();
+
+                if (!(tel instanceof GraphTelemetry) || series == null)
+                    break;
+
+                GraphTelemetry graph = (GraphTelemetry) tel;
+                GraphTelemetry.Series s = graph.series(series);
+
+                if (clean)
+                    graph.addPoint(x, y, true);
+                else if (s != null)
+                    s.addPoint(x, y);
+
+                break;
+            }
+            case TelemetryLog.LINE: {
+                double time = segment.getDouble();
+                String line = readString(segment);
+
+                if (tel instanceof ConsoleTelemetry)
+                    ((ConsoleTelemetry) tel).log(line, time);
+
+                break;
+            }
+            default:
+                throw new IOException("Corrupt record in segment " + segmentNumber + " at offset "
+                        + (segment.position() - TelemetryLog.HEADER));
+        }
+    }
+
+    /**
+     * Gets a recorded module from the display, looking it up again until the display has it.
+     *
+     * @param id module id
+     * @return telemetry instance, or null if the display has no such module
+     */
+    private Telemetry module(int id) {
+        if (id >= moduleNames.size())
+            return null;
+
+        if (modules.length < moduleNames.size()) {
+            Telemetry[] grown = new Telemetry[moduleNames.size()];
+            System.arraycopy(modules, 0, grown, 0, modules.length);
+            modules = grown;
+        }
+
+        if (modules[id] == null)
+            modules[id] = renderer.getTelemetry(moduleNames.get(id));
+
+        return modules[id];
+    }
+
+    /**
+     * Maps a segment file and moves to an offset in it.
+     *
+     * @param number segment number
+     * @param offset byte offset
+     * @return false, leaving the current segment in place, if the segment does not exist
+     */
+    private boolean openSegment(int number, int offset) {
+        if (number == segmentNumber) {
+            segment.position(offset);
+            return true;
+        }
+
+        try (FileChannel channel = FileChannel.open(TelemetryLog.segment(directory, number),
+                StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), segmentSize));
+        } catch (IOException e) {
+            return false;
+        }
+
+        segmentNumber = number;
+        segment.position(offset);
+        return true;
+    }
+
+    /**
+     * Reads the entries of the names file.
+     *
+     * @param names names file, positioned after its header
+     * @throws IOException if an entry is corrupt
+     */
+    private void readNames(ByteBuffer names) throws IOException {
+        while (names.remaining() >= 1 + Short.BYTES + Integer.BYTES) {
+            byte kind = names.get();
+            int id = Short.toUnsignedInt(names.getShort());
+            String name = readString(names);
+            ArrayList<String> list = kind == TelemetryLog.MODULE_NAME ? moduleNames : labelNames;
+
+            // Ids are assigned in order, so each new entry takes the next id
+            if ((kind != TelemetryLog.MODULE_NAME && kind != TelemetryLog.LABEL_NAME) || id != list.size())
+                throw new IOException("Corrupt names file in " + directory);
+
+            list.add(name);
+        }
+    }
+
+    /**
+     * Looks up a recorded name.
+     *
+     * @param list names by id
+     * @param id   16-bit name id
+     * @return name, or null if the id is unknown
+     */
+    private static String name(ArrayList<String> list, short id) {
+        int index = Short.toUnsignedInt(id);
+        return index < list.size() ? list.get(index) : null;
+    }
+
+    /**
+     * Reads a UTF-8 string with a 32-bit length.
+     *
+     * @param buffer buffer positioned at the length
+     * @return string
+     * @throws IOException if the length runs past the buffer
+     */
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+
+        if (length < 0 || length > buffer.remaining())
+            throw new IOException("Corrupt string in telemetry recording");
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
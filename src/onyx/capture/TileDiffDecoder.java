@@ -0,0 +1,183 @@
+package onyx.capture;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Rebuilds frames from a stream written by {@link TileDiffEncoder}, such as a recorded file or a socket. Each frame
+ * read is applied over the previous one, so {@link #image()} always holds the latest complete frame.
+ * <p>
+ * Sizes, tile counts and lengths are checked against the stream format before anything is allocated for them, so a
+ * corrupt stream fails with an {@link IOException} rather than an arbitrarily large allocation.
+ */
+public class TileDiffDecoder implements AutoCloseable {
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private BufferedImage image;
+    private int tileSize = -1;
+    private long sequence = -1;
+
+    /**
+     * Creates a decoder reading from a channel.
+     *
+     * @param source file or socket channel, in blocking mode
+     */
+    public TileDiffDecoder(ReadableByteChannel source) {
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(source)));
+    }
+
+    /**
+     * Reads the next frame and applies its tiles to the image.
+     *
+     * @return false if the stream ended before the frame
+     * @throws IOException if the stream could not be read or is corrupt
+     */
+    public boolean readFrame() throws IOException {
+        try {
+            if (tileSize < 0) {
+                if (in.readLong() != TileStream.MAGIC)
+                    throw new IOException("Not a tile stream");
+
+                tileSize = in.readInt();
+
+                if (tileSize <= 0)
+                    throw new IOException("Corrupt tile size " + tileSize);
+            }
+
+            sequence = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+
+        int width = in.readInt(), height = in.readInt(), count = in.readInt();
+
+        // An image holds at most an int array's worth of pixels
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE - 8 || count < 0)
+            throw new IOException("Corrupt header in frame " + sequence);
+
+        long tiles = (long) ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+        boolean resized = image == null || image.getWidth() != width || image.getHeight() != height;
+
+        // A frame holds each tile at most once, and a frame at a new size holds every tile
+        if (count > tiles || (resized && count != tiles))
+            throw new IOException("Corrupt tile count in frame " + sequence);
+
+        if (resized)
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        for (int i = 0; i < count; i++) {
+            int x = in.readInt(), y = in.readInt(), w = in.readInt(), h = in.readInt();
+
+            if (x < 0 || y < 0 || w < 0 || h < 0 || w > tileSize || h > tileSize || x > width - w || y > height - h)
+                throw new IOException("Tile out of frame bounds in frame " + sequence);
+
+            int length = in.readInt();
+
+            // The inflated tile must fit in a byte array
+            if (3L * w * h > Integer.MAX_VALUE - 8)
+                throw new IOException("Tile too large in frame " + sequence);
+
+            if (length < 0 || length > maxCompressed(3L * w * h))
+                throw new IOException("Corrupt tile length in frame " + sequence);
+
+            byte[] compressed = new byte[length];
+            in.readFully(compressed);
+            applyTile(pixels, width, x, y, w, h, compressed);
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the latest frame. The image is updated in place by later frames.
+     *
+     * @return frame image, or null if no frame has been read
+     */
+    public BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Gets the sequence number of the latest frame.
+     *
+     * @return zero-based frame index, or -1 if no frame has been read
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    /**
+     * Gets the largest size deflating some bytes can produce, following zlib's bound with some slack.
+     *
+     * @param length uncompressed length
+     * @return largest compressed length
+     */
+    private static long maxCompressed(long length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 64;
+    }
+
+    /**
+     * Inflates a tile and copies it into the frame.
+     *
+     * @param pixels     frame pixels
+     * @param width      frame width
+     * @param x          tile left edge
+     * @param y          tile top edge
+     * @param w          tile width
+     * @param h          tile height
+     * @param compressed deflated RGB triples
+     * @throws IOException if the tile is corrupt
+     */
+    private void applyTile(int[] pixels, int width, int x, int y, int w, int h, byte[] compressed)
+            throws IOException {
+        byte[] rgb = new byte[w * h * 3];
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        try {
+            int length = 0;
+
+            while (length < rgb.length && !inflater.finished()) {
+                int n = inflater.inflate(rgb, length, rgb.length - length);
+
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+
+                length += n;
+            }
+
+            if (length != rgb.length)
+                throw new IOException("Truncated tile in frame " + sequence);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt tile in frame " + sequence, e);
+        }
+
+        for (int row = 0, i = 0; row < h; row++) {
+            int base = (y + row) * width + x;
+
+            for (int column = 0; column < w; column++, i += 3)
+                pixels[base + column] = (rgb[i] & 0xFF) << 16 | (rgb[i + 1] & 0xFF) << 8 | (rgb[i + 2] & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package onyx.capture;
+
+import onyx.graphics.FrameListener;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Streams rendered frames to a channel as the tiles that changed since the previous frame. Register an encoder with
+ * {@link onyx.graphics.Display#addFrameListener(FrameListener)}; the stream can be written to a file or a socket and
+ * read back with {@link TileDiffDecoder}.
+ * <p>
+ * Each frame is split into square tiles, and each tile is compared with the same tile of the last frame seen. Frames
+ * the renderer reports as unchanged are not compared at all. Changed tiles are copied on the rendering thread, then
+ * deflated in parallel and written on a background thread. While a frame is being written, later frames are not
+ * queued: their changed tiles are merged into the next frame written, so a slow channel lowers the frame rate instead of
+ * building a backlog. Merged frames are counted in {@link #coalescedFrames()}. Closing the encoder writes any merged
+ * tiles still waiting before the channel is closed.
+ * <p>
+ * Frames are read through a copy of their pixels rather than their backing arrays, so the renderer's images stay
+ * eligible for acceleration.
+ */
+public class TileDiffEncoder implements FrameListener, AutoCloseable {
+    private final WritableByteChannel sink;
+    private final int tileSize;
+    private final ExecutorService writer, compressors;
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    // Rendering thread state, guarded by the writer so that closing can flush it: the last frame seen, and tiles
+    // changed since the last frame written
+    private int[] previous = new int[0], scratch = new int[0];
+    private int width, height, columns, rows;
+    private final BitSet pending = new BitSet();
+    private volatile boolean busy, keyframe = true, closed;
+    private volatile IOException failure;
+    // Only written by the rendering thread, or by the writing thread for counters it owns
+    private volatile long frames, coalescedFrames, tiles, bytesWritten;
+
+    /**
+     * A changed tile copied out of a frame.
+     */
+    private static class Tile {
+        final int x, y, width, height;
+        final int[] pixels;
+        byte[] compressed;
+
+        /**
+         * Creates a tile.
+         *
+         * @param x      left edge in pixels
+         * @param y      top edge in pixels
+         * @param width  width in pixels
+         * @param height height in pixels
+         */
+        Tile(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            pixels = new int[width * height];
+        }
+    }
+
+    /**
+     * Creates an encoder writing to a channel.
+     *
+     * @param sink     file or socket channel, in blocking mode
+     * @param tileSize tile width and height in pixels
+     * @param threads  number of compression threads
+     */
+    public TileDiffEncoder(WritableByteChannel sink, int tileSize, int threads) {
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("Tile size must be positive");
+
+        this.sink = sink;
+        this.tileSize = tileSize;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Onyx tile writer");
+            t.setDaemon(true);
+            return t;
+        });
+        compressors = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Onyx tile compressor");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.execute(this::writeStreamHeader);
+    }
+
+    /**
+     * Compares a completed frame with the previous one and queues its changed tiles to be written, or merges them into
+     * the next frame if a frame is still being written.
+     *
+     * @param frame   completed frame
+     * @param changed whether or not any part of the frame changed since the previous one
+     */
+    @Override
+    public void frameRendered(BufferedImage frame, boolean changed) {
+        if (closed || failure != null)
+            return;
+
+        // Closing shuts the writer down under the same lock, so a frame is never handed to a stopped writer
+        synchronized (writer) {
+            if (closed)
+                return;
+
+            if (frame.getWidth() != width || frame.getHeight() != height)
+                resize(frame.getWidth(), frame.getHeight());
+
+            if (changed || keyframe)
+                compare(pixels(frame));
+
+            if (pending.isEmpty())
+                return;
+
+            if (busy) {
+                coalescedFrames++;
+                return;
+            }
+
+            writePending();
+        }
+    }
+
+    /**
+     * Sends every tile with the next frame, such as after a new viewer connects to a shared stream.
+     */
+    public void requestKeyframe() {
+        keyframe = true;
+    }
+
+    /**
+     * Stops accepting frames, writes any tiles merged while a frame was being written, waits for the writes, and
+     * closes the channel.
+     *
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            if (closed)
+                return;
+
+            closed = true;
+
+            // Tiles merged from frames after the last one written are queued behind it
+            if (!pending.isEmpty() && failure == null)
+                writePending();
+
+            writer.shutdown();
+        }
+
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        compressors.shutdown();
+        sink.close();
+    }
+
+    /**
+     * Gets the number of frames written or being written.
+     *
+     * @return frame count
+     */
+    public long frames() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of changed frames merged into a later frame because a frame was still being written.
+     *
+     * @return coalesced frame count
+     */
+    public long coalescedFrames() {
+        return coalescedFrames;
+    }
+
+    /**
+     * Gets the number of tiles written.
+     *
+     * @return tile count
+     */
+    public long tiles() {
+        return tiles;
+    }
+
+    /**
+     * Gets the number of bytes written to the channel.
+     *
+     * @return byte count
+     */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the error that stopped the encoder, if any.
+     *
+     * @return write error, or null
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Copies the pending tiles and queues them to be written as the next frame. Called with the writer locked.
+     */
+    private void writePending() {
+        // Every pending tile of the previous frame already holds the current pixels
+        ArrayList<Tile> changedTiles = new ArrayList<>(pending.cardinality());
+
+        for (int t = pending.nextSetBit(0); t >= 0; t = pending.nextSetBit(t + 1))
+            changedTiles.add(copyTile(t));
+
+        pending.clear();
+        busy = true;
+        long sequence = frames++;
+        int frameWidth = width, frameHeight = height;
+
+        writer.execute(() -> {
+            try {
+                writeFrame(changedTiles, sequence, frameWidth, frameHeight);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                busy = false;
+            }
+        });
+    }
+
+    /**
+     * Starts over at a new frame size; the next frame written holds every tile.
+     *
+     * @param newWidth  frame width in pixels
+     * @param newHeight frame height in pixels
+     */
+    private void resize(int newWidth, int newHeight) {
+        width = newWidth;
+        height = newHeight;
+        columns = (width + tileSize - 1) / tileSize;
+        rows = (height + tileSize - 1) / tileSize;
+        previous = new int[width * height];
+        pending.clear();
+        keyframe = true;
+    }
+
+    /**
+     * Copies the pixels of a frame, one packed RGB int per pixel in rows, into a reused array. Frames from the renderer
+     * are copied straight from their raster; frames of other types are converted.
+     *
+     * @param frame frame image
+     * @return pixel array
+     */
+    private int[] pixels(BufferedImage frame) {
+        if (scratch.length != width * height)
+            scratch = new int[width * height];
+
+        // Reading the raster's backing array would stop the renderer's image from being accelerated
+        if (frame.getType() == BufferedImage.TYPE_INT_RGB || frame.getType() == BufferedImage.TYPE_INT_ARGB)
+            return (int[]) frame.getRaster().getDataElements(0, 0, width, height, scratch);
+
+        return frame.getRGB(0, 0, width, height, scratch, 0, width);
+    }
+
+    /**
+     * Compares each tile with the previous frame, copying changed tiles into it and marking them pending.
+     *
+     * @param current pixels of the current frame
+     */
+    private void compare(int[] current) {
+        boolean all = keyframe;
+        keyframe = false;
+
+        for (int row = 0; row < rows; row++) {
+            int top = row * tileSize, bottom = Math.min(top + tileSize, height);
+
+            for (int column = 0; column < columns; column++) {
+                int left = column * tileSize, right = Math.min(left + tileSize, width);
+                boolean differs = all;
+
+                for (int y = top; y < bottom && !differs; y++) {
+                    int start = y * width;
+                    differs = Arrays.mismatch(current, start + left, start + right,
+                            previous, start + left, start + right) >= 0;
+                }
+
+                if (!differs)
+                    continue;
+
+                for (int y = top; y < bottom; y++)
+                    System.arraycopy(current, y * width + left, previous, y * width + left, right - left);
+
+                pending.set(row * columns + column);
+            }
+        }
+    }
+
+    /**
+     * Copies a tile out of the previous frame.
+     *
+     * @param index tile index, in rows
+     * @return tile copy
+     */
+    private Tile copyTile(int index) {
+        int left = (index % columns) * tileSize, top = (index / columns) * tileSize;
+        Tile tile = new Tile(left, top, Math.min(tileSize, width - left), Math.min(tileSize, height - top));
+
+        for (int y = 0; y < tile.height; y++)
+            System.arraycopy(previous, (top + y) * width + left, tile.pixels, y * tile.width, tile.width);
+
+        return tile;
+    }
+
+    /**
+     * Writes the stream header. Runs on the writing thread before any frame.
+     */
+    private void writeStreamHeader() {
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+        header.putLong(TileStream.MAGIC).putInt(tileSize).flip();
+
+        try {
+            write(header);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Compresses a frame's tiles in parallel and writes the frame.
+     *
+     * @param changedTiles tiles to write
+     * @param sequence     zero-based frame index
+     * @param frameWidth   frame width in pixels
+     * @param frameHeight  frame height in pixels
+     * @throws IOException if the frame could not be written
+     */
+    private void writeFrame(List<Tile> changedTiles, long sequence, int frameWidth, int frameHeight)
+            throws IOException {
+        if (failure != null)
+            return;
+
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(changedTiles.size());
+
+        for (Tile tile : changedTiles) {
+            tasks.add(() -> {
+                tile.compressed = compress(tile.pixels);
+                return null;
+            });
+        }
+
+        int size = TileStream.FRAME_HEADER;
+
+        try {
+            for (Future<Void> f : compressors.invokeAll(tasks))
+                f.get();
+        } catch (InterruptedException e) {
+            // The frame's tiles are lost, so the stream cannot carry on without the decoder drifting
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing frame " + sequence);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress tile", e.getCause());
+        }
+
+        for (Tile tile : changedTiles)
+            size += TileStream.TILE_HEADER + tile.compressed.length;
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putLong(sequence).putInt(frameWidth).putInt(frameHeight).putInt(changedTiles.size());
+
+        for (Tile tile : changedTiles) {
+            out.putInt(tile.x).putInt(tile.y).putInt(tile.width).putInt(tile.height)
+                    .putInt(tile.compressed.length).put(tile.compressed);
+        }
+
+        out.flip();
+        write(out);
+        tiles += changedTiles.size();
+    }
+
+    /**
+     * Deflates a tile's pixels as RGB triples.
+     *
+     * @param pixels packed RGB pixels
+     * @return compressed bytes
+     */
+    private byte[] compress(int[] pixels) {
+        byte[] rgb = new byte[pixels.length * 3];
+
+        for (int i = 0; i < pixels.length; i++) {
+            rgb[i * 3] = (byte) (pixels[i] >> 16);
+            rgb[i * 3 + 1] = (byte) (pixels[i] >> 8);
+            rgb[i * 3 + 2] = (byte) pixels[i];
+        }
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(rgb);
+        deflater.finish();
+
+        // Flat tiles shrink to a few bytes; the buffer only grows for noisy ones
+        byte[] out = new byte[64 + rgb.length / 8];
+        int length = 0;
+
+        while (!deflater.finished()) {
+            if (length == out.length)
+                out = Arrays.copyOf(out, out.length * 2);
+
+            length += deflater.deflate(out, length, out.length - length);
+        }
+
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Writes a whole buffer to the channel.
+     *
+     * @param buffer bytes to write, from position to limit
+     * @throws IOException if the write failed
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+
+        while (buffer.hasRemaining())
+            sink.write(buffer);
+
+        bytesWritten += length;
+    }
+}
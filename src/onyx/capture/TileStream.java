@@ -0,0 +1,23 @@
+package onyx.capture;
+
+/**
+ * The stream format shared by {@link TileDiffEncoder} and {@link TileDiffDecoder}. A stream begins with
+ * {@link #MAGIC} and the tile size, followed by frames. A frame is a 64-bit sequence number, the frame width and height,
+ * and a tile count, followed by that many tiles. A tile is its left, top, width and height in pixels, and the length of
+ * its pixels, which follow as deflated 8-bit RGB triples in rows.
+ * <p>
+ * The first frame, and the first frame after a resize or a requested keyframe, holds every tile; other frames hold only
+ * the tiles that changed. Numbers are big-endian 32-bit unless noted.
+ */
+class TileStream {
+    static final long MAGIC = 0x4F4E595854494C45L;
+
+    // Sequence, width, height and tile count
+    static final int FRAME_HEADER = 20;
+    // Left, top, width, height and length
+    static final int TILE_HEADER = 20;
+
+    // Do not construct
+    private TileStream() {
+    }
+}
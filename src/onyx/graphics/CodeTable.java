@@ -0,0 +1,256 @@
+package onyx.graphics;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable, compiled table of the color and weight codes used in coded text. Single-character codes are looked up
+ * in arrays indexed by character; multi-character color codes, which appear in coded text enclosed in curly braces
+ * (e.g. "!{mv}"), are matched against a trie while scanning, so no strings are built.
+ * <p>
+ * Tables are immutable and safe to share between threads. A display compiles a new table whenever one of its codes
+ * changes.
+ */
+public class CodeTable {
+    /**
+     * Character beginning a color code.
+     */
+    public static final char BEGIN_COLOR_CODE = '!';
+    /**
+     * Character beginning a weight code.
+     */
+    public static final char BEGIN_WEIGHT_CODE = '#';
+
+    private static final int ASCII = 128;
+
+    private final Color[] colors = new Color[ASCII];
+    private final int[] weights = new int[ASCII];
+    private final Node root = new Node();
+
+    /**
+     * Receives the runs of plain text found while parsing coded text.
+     */
+    @FunctionalInterface
+    public interface RunHandler {
+        /**
+         * Handles a run of text in a single style.
+         *
+         * @param text   parsed text
+         * @param start  index of the first character of the run
+         * @param end    index after the last character of the run
+         * @param color  run color, or null for the default text color
+         * @param weight font style constant
+         */
+        void run(CharSequence text, int start, int end, Color color, int weight);
+    }
+
+    /**
+     * A trie node. Children are kept in parallel arrays sorted by character.
+     */
+    private static class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        Color color;
+
+        /**
+         * Gets the child reached by a character.
+         *
+         * @param c next character
+         * @return child node, or null if no code continues with the character
+         */
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        /**
+         * Gets the child reached by a character, adding it if necessary.
+         *
+         * @param c next character
+         * @return child node
+         */
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+
+            if (i >= 0)
+                return children[i];
+
+            i = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[children.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(children, 0, n, 0, i);
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(children, i, n, i + 1, children.length - i);
+            k[i] = c;
+            n[i] = new Node();
+            keys = k;
+            children = n;
+            return n[i];
+        }
+    }
+
+    /**
+     * Compiles a table from maps of codes.
+     *
+     * @param colorCodes  color for each code following '!'
+     * @param weightCodes font style constant for each single-character code following '#'
+     */
+    public CodeTable(Map<String, Color> colorCodes, Map<String, Integer> weightCodes) {
+        Arrays.fill(weights, -1);
+
+        for (Map.Entry<String, Color> e : colorCodes.entrySet()) {
+            String code = e.getKey();
+
+            if (code.length() == 1 && code.charAt(0) < ASCII)
+                colors[code.charAt(0)] = e.getValue();
+
+            // Every code goes in the trie, so non-ASCII single-character codes are found there too
+            Node node = root;
+            for (int i = 0; i < code.length(); i++)
+                node = node.addChild(code.charAt(i));
+
+            node.color = e.getValue();
+        }
+
+        for (Map.Entry<String, Integer> e : weightCodes.entrySet())
+            if (e.getKey().length() == 1 && e.getKey().charAt(0) < ASCII)
+                weights[e.getKey().charAt(0)] = e.getValue();
+    }
+
+    /**
+     * Compiles a table of the default codes in {@link Display#COLOR_CODES} and {@link Display#WEIGHT_CODES}.
+     *
+     * @return default code table
+     */
+    public static CodeTable defaults() {
+        synchronized (Display.COLOR_CODES) {
+            return new CodeTable(Display.COLOR_CODES, Display.WEIGHT_CODES);
+        }
+    }
+
+    /**
+     * Gets the color of a single-character color code.
+     *
+     * @param code character following '!'
+     * @return color, or null if the character is not a code
+     */
+    public Color color(char code) {
+        if (code < ASCII)
+            return colors[code];
+
+        Node node = root.child(code);
+        return node == null ? null : node.color;
+    }
+
+    /**
+     * Gets the font style of a weight code.
+     *
+     * @param code character following '#'
+     * @return font style constant, or -1 if the character is not a code
+     */
+    public int weight(char code) {
+        return code < ASCII ? weights[code] : -1;
+    }
+
+    /**
+     * Gets the length of the color or weight code starting at some index, including its leading '!' or '#'.
+     *
+     * @param text  coded text
+     * @param index index of a possible code
+     * @return code length, or 0 if no valid code starts at the index
+     */
+    public int codeLength(CharSequence text, int index) {
+        if (index >= text.length() - 1)
+            return 0;
+
+        char c = text.charAt(index), next = text.charAt(index + 1);
+
+        if (c == BEGIN_WEIGHT_CODE)
+            return weight(next) >= 0 ? 2 : 0;
+
+        if (c != BEGIN_COLOR_CODE)
+            return 0;
+
+        // Single-character codes take precedence over braces
+        if (color(next) != null)
+            return 2;
+
+        if (next != '{')
+            return 0;
+
+        Node node = root;
+
+        for (int i = index + 2; i < text.length(); i++) {
+            char k = text.charAt(i);
+
+            if (k == '}')
+                return node.color != null && node != root ? i - index + 1 : 0;
+
+            node = node.child(k);
+            if (node == null)
+                return 0;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets the color of a color code found by {@link #codeLength(CharSequence, int)}.
+     *
+     * @param text   coded text
+     * @param index  index of the code's '!'
+     * @param length code length
+     * @return color
+     */
+    public Color color(CharSequence text, int index, int length) {
+        if (length == 2)
+            return color(text.charAt(index + 1));
+
+        Node node = root;
+        for (int i = index + 2; i < index + length - 1; i++)
+            node = node.child(text.charAt(i));
+
+        return node.color;
+    }
+
+    /**
+     * Splits coded text into runs of plain text, each in one style. Invalid codes are treated as plain text, and codes
+     * with no text between them produce no runs. Nothing is allocated.
+     *
+     * @param text    coded text
+     * @param handler receiver of each run, in order
+     */
+    public void parse(CharSequence text, RunHandler handler) {
+        Color color = null;
+        int weight = Font.PLAIN;
+        int start = 0;
+        int index = 0;
+
+        while (index < text.length()) {
+            int length = codeLength(text, index);
+
+            // Plain character
+            if (length == 0) {
+                index++;
+                continue;
+            }
+
+            // Style change; close off the current run
+            if (index > start)
+                handler.run(text, start, index, color, weight);
+
+            if (text.charAt(index) == BEGIN_COLOR_CODE)
+                color = color(text, index, length);
+            else
+                weight = weight(text.charAt(index + 1));
+
+            index += length;
+            start = index;
+        }
+
+        if (index > start)
+            handler.run(text, start, index, color, weight);
+    }
+}
@@ -1,12 +1,10 @@
 package onyx.graphics;
 
-import onyx.telemetry.ImageTelemetry;
+import onyx.telemetry.MetricsTelemetry;
 import onyx.telemetry.Telemetry;
-import onyx.telemetry.TextTelemetry;
 import onyx.util.ColorLibrary;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import javax.swing.*;
 
@@ -18,12 +16,20 @@ import javax.swing.*;
  * with the '!' and '#' characters, respectively, where the following character is a formatting metacharacter indicating
  * the change to be made. See {@link #COLOR_CODES} and {@link #WEIGHT_CODES} for valid metacharacters.
  * <p>
- * The display's refresh rate defaults to 60 Hz. This can be updated via {@link #setRefreshRate(int)}.
+ * The display's refresh rate defaults to 60 Hz. This can be updated via {@link #setRefreshRate(int)}. Once
+ * {@link #start()} is called, a {@link FrameScheduler} repaints the display at that rate on its own thread, so threads
+ * updating telemetry are never blocked by rendering.
+ * <p>
+ * Frames are drawn by a {@link FrameRenderer} into a persistent back buffer, redrawing only telemetry that changed.
+ * {@link HeadlessDisplay} renders the same modules without a window.
  */
 public class Display extends JPanel {
     /**
      * Characters that, when preceded by '!' in coded text, trigger a color change. Note that color codes with more than
      * one character must be enclosed in curly braces (e.g. "!{mv}").
+     * <p>
+     * These are the default codes, copied into a {@link CodeTable} when each display is created. Codes added with
+     * {@link #addColorCode(String, Color)} apply to a single display and do not change this map.
      */
     public static final HashMap<String, Color> COLOR_CODES = new HashMap<>() {{
         put("r", Color.RED);
@@ -52,19 +58,9 @@ public class Display extends JPanel {
         put("i", Font.ITALIC);
     }};
 
-    private static final char BEGIN_COLOR_CODE = '!';
-    private static final char BEGIN_WEIGHT_CODE = '#';
-
-    private HashMap<String, Telemetry> telemetryMap = new HashMap<>();
-    private BufferedImage telemetryImage;
-    private Graphics2D targetSurface;
-    private Font font;
-    private FontMetrics fontMetrics;
-    private Theme theme;
-    private Color bgColor, textColor;
-
-    private String fontName;
-    private int fontSize, lineHeight, fps = 60;
+    private FrameRenderer renderer;
+    private FrameScheduler scheduler;
+    private int fps = 60;
 
     /**
      * Initializes an empty display.
@@ -78,16 +74,9 @@ public class Display extends JPanel {
     public Display(int width, int height, int fontSize, String fontName, Theme theme) {
         setPreferredSize(new Dimension(width, height));
 
-        this.fontSize = fontSize;
-        this.fontName = fontName;
-        this.theme = theme;
-
-        font = new Font(fontName, Font.PLAIN, fontSize);
-        fontMetrics = getFontMetrics(font);
-        lineHeight = fontMetrics.getHeight();
-
-        bgColor = theme.getColor("bg");
-        textColor = theme.getColor("text");
+        renderer = new FrameRenderer(fontSize, fontName, theme);
+        scheduler = new FrameScheduler("Onyx display", fps, this::repaint);
+        renderer.metrics().setScheduler(scheduler);
     }
 
     /**
@@ -96,14 +85,43 @@ public class Display extends JPanel {
      * @param fps frequency (Hz)
      */
     public void setRefreshRate(int fps) {
+        scheduler.setRefreshRate(fps);
         this.fps = fps;
     }
 
+    /**
+     * Starts repainting the display at the refresh rate. Frames are requested on a dedicated thread; if the display
+     * falls behind, frames are skipped rather than queued.
+     *
+     * @see #setRefreshRate(int)
+     */
+    public void start() {
+        scheduler.start();
+    }
+
+    /**
+     * Stops the automatic repainting started by {@link #start()}.
+     */
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * Gets the scheduler driving automatic repaints, e.g. for reading frame and dropped frame counts.
+     *
+     * @return frame scheduler
+     */
+    public FrameScheduler scheduler() {
+        return scheduler;
+    }
+
     /**
      * Renders a single frame to the display. After the rendering is complete, the thread will sleep for 1000 /{@link #fps}
      * milliseconds to smooth the interaction between the display and update threads (the thread placing calls to
      * update). Ideally, calls to this method are placed in a loop running at or above the refresh rate for the duration
      * of the program.
+     * <p>
+     * Prefer {@link #start()}, which repaints on a dedicated thread without blocking the caller.
      *
      * @see {@link #setRefreshRate(int)}
      */
@@ -117,40 +135,28 @@ public class Display extends JPanel {
     }
 
     /**
-     * Renders all telemetry to the target graphics surface.
+     * Forces every telemetry module to be redrawn on the next frame.
      */
-    private void renderTelemetry() {
-        // Create a clean drawing surface
-        telemetryImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        targetSurface = telemetryImage.createGraphics();
-        targetSurface.setFont(font);
-
-        // Draw all telemetry modules
-        for (Telemetry t : telemetryMap.values()) {
-            // TextTelemetry instances
-            if (t instanceof TextTelemetry) {
-                TextTelemetry tel = (TextTelemetry) t;
-                String[] data = tel.data();
-                boolean coded = tel.coded();
-
-                // Draw each line separately
-                for (int i = 0; i < data.length; i++) {
-                    int x = tel.x();
-                    int y = tel.y() + i * lineHeight;
+    public void redrawAll() {
+        renderer.redrawAll();
+    }
 
-                    // Only process metacharacters if necessary
-                    if (coded)
-                        drawTextFormatted(x, y, data[i]);
-                    else
-                        targetSurface.drawString(data[i], x, y);
-                }
-            } else if (t instanceof ImageTelemetry) {
-                ImageTelemetry tel = (ImageTelemetry) t;
-                targetSurface.drawImage(tel.render(), tel.x(), tel.y(), null);
-            }
-        }
+    /**
+     * Registers a listener to be notified each time a frame is rendered, e.g. a {@link onyx.capture.FrameRecorder}.
+     *
+     * @param listener frame listener
+     */
+    public void addFrameListener(FrameListener listener) {
+        renderer.addFrameListener(listener);
+    }
 
-        targetSurface.dispose();
+    /**
+     * Unregisters a frame listener.
+     *
+     * @param listener frame listener
+     */
+    public void removeFrameListener(FrameListener listener) {
+        renderer.removeFrameListener(listener);
     }
 
     /**
@@ -160,7 +166,7 @@ public class Display extends JPanel {
      * @param tel        telemetry instance
      */
     public void addTelemetry(String identifier, Telemetry tel) {
-        telemetryMap.put(identifier, tel);
+        renderer.addTelemetry(identifier, tel);
     }
 
     /**
@@ -170,17 +176,17 @@ public class Display extends JPanel {
      * @return corresponding telemetry object, or null if not found
      */
     public Telemetry getTelemetry(String identifier) {
-        return telemetryMap.get(identifier);
+        return renderer.getTelemetry(identifier);
     }
 
     /**
-     * Adds a new color code, or overwrites a native one.
+     * Adds a new color code, or overwrites a native one, for this display only.
      *
      * @param code format code to follow '!'
      * @param col  color
      */
     public void addColorCode(String code, Color col) {
-        COLOR_CODES.put(code, col);
+        renderer.addColorCode(code, col);
     }
 
     /**
@@ -190,80 +196,17 @@ public class Display extends JPanel {
      */
     @Override
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        setBackground(bgColor);
-        renderTelemetry();
-        g.drawImage(telemetryImage, 0, 0, this);
-    }
-
-    /**
-     * Text drawing with support for format metacharacters.
-     *
-     * @param x   horizontal position from surface left
-     * @param y   vertical position from surface top
-     * @param str text to draw
-     */
-    private void drawTextFormatted(int x, int y, String str) {
-        if (str == null)
-            return;
-
-        targetSurface.setColor(textColor);
-        targetSurface.setFont(new Font(fontName, Font.PLAIN, fontSize));
-
-        int horizOffset = 0;
-        int index = 0;
-
-        // Each character is drawn separately
-        while (index < str.length()) {
-            char c = str.charAt(index);
-
-            // Color code was found
-            if (c == BEGIN_COLOR_CODE && index != str.length() - 1) {
-                char nextChar = str.charAt(index + 1);
-                Color col = COLOR_CODES.get("" + nextChar);
-
-                // Single-character code
-                if (col != null) {
-                    targetSurface.setColor(col);
-                    index += 2;
-                    continue;
-
-                    // Multi-character code enclosed in brackets
-                } else if (nextChar == '{') {
-                    // Find index of closing bracket
-                    int closeIndex = -1;
-                    for (int i = index + 2; i < str.length() && closeIndex == -1; i++)
-                        if (str.charAt(i) == '}')
-                            closeIndex = i;
-
-                    // Look up next color
-                    if (closeIndex != -1) {
-                        String code = str.substring(index + 2, closeIndex);
-                        col = COLOR_CODES.get(code);
-
-                        if (col != null) {
-                            targetSurface.setColor(col);
-                            index += 3 + code.length();
-                            continue;
-                        }
-                    }
-                }
-
-                // Weight code was found
-            } else if (c == BEGIN_WEIGHT_CODE) {
-                Integer weight = WEIGHT_CODES.get("" + str.charAt(index + 1));
-
-                if (weight != null) {
-                    targetSurface.setFont(new Font(fontName, weight, fontSize));
-                    index += 2;
-                    continue;
-                }
-            }
-
-            targetSurface.drawString("" + c, x + horizOffset, y + lineHeight);
-
-            horizOffset += fontMetrics.stringWidth("" + c);
-            index++;
+        // The scheduler must hear back even if the frame fails, or it stops requesting frames
+        try {
+            super.paintComponent(g);
+            setBackground(renderer.background());
+            renderer.render(getWidth(), getHeight());
+
+            long blitStart = System.nanoTime();
+            g.drawImage(renderer.frame(), 0, 0, this);
+            renderer.metrics().blitFinished(System.nanoTime() - blitStart);
+        } finally {
+            scheduler.frameComplete();
         }
     }
 
@@ -273,7 +216,7 @@ public class Display extends JPanel {
      * @return font metrics
      */
     public FontMetrics fontMetrics() {
-        return fontMetrics;
+        return renderer.fontMetrics();
     }
 
     /**
@@ -282,7 +225,7 @@ public class Display extends JPanel {
      * @return display font
      */
     public Font font() {
-        return font;
+        return renderer.font();
     }
 
     /**
@@ -291,7 +234,7 @@ public class Display extends JPanel {
      * @return line height in pixels
      */
     public int lineHeight() {
-        return lineHeight;
+        return renderer.lineHeight();
     }
 
     /**
@@ -300,7 +243,46 @@ public class Display extends JPanel {
      * @param theme
      */
     public void setTheme(Theme theme) {
-        this.theme = theme;
+        renderer.setTheme(theme);
+    }
+
+    /**
+     * Gets the statistics collected while rendering this display's frames.
+     *
+     * @return render metrics
+     */
+    public RenderMetrics metrics() {
+        return renderer.metrics();
+    }
+
+    /**
+     * Adds an overlay showing this display's render metrics.
+     *
+     * @param x horizontal position from interface left
+     * @param y vertical position from interface top
+     * @return the overlay module
+     */
+    public MetricsTelemetry addMetricsOverlay(int x, int y) {
+        return renderer.addMetricsOverlay(x, y);
+    }
+
+    /**
+     * Sets the number of threads this display's frames are drawn with.
+     *
+     * @param threads number of render threads, at least 1
+     * @see FrameRenderer#setRenderThreads(int)
+     */
+    public void setRenderThreads(int threads) {
+        renderer.setRenderThreads(threads);
+    }
+
+    /**
+     * Gets the renderer that draws this display's frames.
+     *
+     * @return frame renderer
+     */
+    public FrameRenderer renderer() {
+        return renderer;
     }
 
     /**
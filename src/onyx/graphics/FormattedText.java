@@ -0,0 +1,90 @@
+package onyx.graphics;
+
+import java.awt.*;
+
+/**
+ * A line of coded text compiled into styled runs. Each run is a maximal stretch of characters sharing a color and
+ * weight, with its pixel offset and width precomputed, so the line can be drawn with one
+ * {@link Graphics#drawString(String, int, int)} per run instead of one per character. Immutable once compiled.
+ *
+ * @see TextFormatter
+ */
+public class FormattedText {
+    private final String source;
+    private final Run[] runs;
+    private final int width;
+
+    /**
+     * A stretch of text drawn in a single color and weight.
+     */
+    public static class Run {
+        /**
+         * Run text, with all metacharacters removed.
+         */
+        public final String text;
+        /**
+         * Run color, or null if the run uses the display's default text color.
+         */
+        public final Color color;
+        /**
+         * Font style constant ({@link Font#PLAIN}, {@link Font#BOLD}, or {@link Font#ITALIC}).
+         */
+        public final int weight;
+        /**
+         * Pixels from the start of the line to the start of the run.
+         */
+        public final int offset;
+        /**
+         * Pixel width of the run.
+         */
+        public final int width;
+
+        public Run(String text, Color color, int weight, int offset, int width) {
+            this.text = text;
+            this.color = color;
+            this.weight = weight;
+            this.offset = offset;
+            this.width = width;
+        }
+    }
+
+    /**
+     * Creates a compiled line.
+     *
+     * @param source coded text the line was compiled from
+     * @param runs   styled runs in drawing order
+     * @param width  pixel width of the visible text
+     */
+    public FormattedText(String source, Run[] runs, int width) {
+        this.source = source;
+        this.runs = runs;
+        this.width = width;
+    }
+
+    /**
+     * Gets the coded text this line was compiled from.
+     *
+     * @return source text
+     */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * Gets the styled runs making up the line.
+     *
+     * @return runs in drawing order
+     */
+    public Run[] runs() {
+        return runs;
+    }
+
+    /**
+     * Gets the pixel width of the line as drawn, excluding metacharacters.
+     *
+     * @return width in pixels
+     */
+    public int width() {
+        return width;
+    }
+}
@@ -0,0 +1,18 @@
+package onyx.graphics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Receives each frame completed by a {@link FrameRenderer}.
+ */
+public interface FrameListener {
+
+    /**
+     * Called on the rendering thread after a frame is rendered. The frame is the renderer's back buffer and is
+     * redrawn in place, so listeners must copy anything they need before returning, and should return quickly.
+     *
+     * @param frame   completed frame
+     * @param changed whether or not any part of the frame changed since the previous one
+     */
+    public void frameRendered(BufferedImage frame, boolean changed);
+}
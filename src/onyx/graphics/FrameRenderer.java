@@ -0,0 +1,765 @@
+package onyx.graphics;
+
+import onyx.telemetry.ImageTelemetry;
+import onyx.telemetry.MetricsTelemetry;
+import onyx.telemetry.Telemetry;
+import onyx.telemetry.TextTelemetry;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Draws a collection of telemetry modules into an offscreen back buffer. This is the rendering core shared by
+ * {@link Display}, which shows the buffer in a Swing panel, and {@link HeadlessDisplay}, which renders without a
+ * window. It uses only image surfaces, so it works under {@code java.awt.headless=true}.
+ * <p>
+ * The back buffer persists across frames and is only reallocated when the frame size changes. Each frame, only
+ * telemetry flagged with {@link Telemetry#markDirty()} has its old and new bounds cleared and redrawn; telemetry is
+ * drawn in the order it was added, so later modules appear on top of earlier ones. Damaged regions are composited in a
+ * second, never displayed buffer, where text is filled straight into the pixels, and then copied into the back buffer
+ * through its raster. The back buffer's pixel array is never taken, so Java2D may keep it cached on the graphics
+ * device for fast blits.
+ * <p>
+ * Frames are drawn on the rendering thread unless {@link #setRenderThreads(int)} enables parallel rendering. In
+ * parallel, each module to be redrawn is first brought up to date on its own surface (graphs render their images, text
+ * modules snapshot and compile their lines) on a pool of worker threads; the frame is then split into horizontal tiles,
+ * and each worker composites every module in drawing order into the tiles it is given. Tiles never overlap and are
+ * drawn with the same operations, clipped to the tile, as a serial frame, so both modes produce identical pixels.
+ */
+public class FrameRenderer {
+    /**
+     * Identifier of the overlay added by {@link #addMetricsOverlay(int, int)}.
+     */
+    public static final String METRICS_OVERLAY = "onyx.metrics";
+
+    private volatile LinkedHashMap<String, Telemetry> telemetryMap = new LinkedHashMap<>();
+    private CopyOnWriteArrayList<FrameListener> frameListeners = new CopyOnWriteArrayList<>();
+    private final RenderMetrics metrics = new RenderMetrics();
+    private IdentityHashMap<Telemetry, Rectangle> drawnBounds = new IdentityHashMap<>();
+    private ArrayList<Rectangle> damage = new ArrayList<>();
+    private BufferedImage telemetryImage;
+    // Damaged regions are drawn here, then copied into the back buffer
+    private BufferedImage composeImage;
+    private volatile boolean fullRedraw = true;
+    private Font font;
+    private FontMetrics fontMetrics;
+    private TextFormatter formatter;
+    private final HashMap<String, Color> colorCodes;
+    private GlyphAtlas atlas;
+    private GlyphAtlas[] tileAtlases = new GlyphAtlas[0];
+    private ExecutorService renderPool;
+    private int renderThreads = 1;
+    private volatile Color bgColor, textColor;
+    private int lineHeight;
+
+    /**
+     * Creates a renderer with no telemetry.
+     *
+     * @param fontSize font size
+     * @param fontName font name
+     * @param theme    color theme
+     */
+    public FrameRenderer(int fontSize, String fontName, Theme theme) {
+        font = new Font(fontName, Font.PLAIN, fontSize);
+
+        // Each renderer has its own codes, starting from the defaults
+        synchronized (Display.COLOR_CODES) {
+            colorCodes = new HashMap<>(Display.COLOR_CODES);
+        }
+
+        formatter = new TextFormatter(font, new CodeTable(colorCodes, Display.WEIGHT_CODES));
+        atlas = new GlyphAtlas(formatter);
+        fontMetrics = formatter.fontMetrics(Font.PLAIN);
+        lineHeight = fontMetrics.getHeight();
+        setTheme(theme);
+    }
+
+    /**
+     * A module to be redrawn this frame, brought up to date before it is composited.
+     */
+    private static class Layer {
+        final String identifier;
+        final Telemetry telemetry;
+        final Rectangle bounds;
+        final int x, y;
+        String[] lines;
+        FormattedText[] runs;
+        BufferedImage image;
+        long nanos;
+
+        /**
+         * Creates a layer for a module.
+         *
+         * @param identifier identifying name
+         * @param telemetry  telemetry to draw
+         * @param bounds     region the module may draw into
+         */
+        Layer(String identifier, Telemetry telemetry, Rectangle bounds) {
+            this.identifier = identifier;
+            this.telemetry = telemetry;
+            this.bounds = bounds;
+            x = telemetry.x();
+            y = telemetry.y();
+        }
+    }
+
+    /**
+     * Renders all changed telemetry to the back buffer. The buffer is reallocated and fully redrawn only when the
+     * frame size changes or a full redraw was requested; otherwise, the old and new bounds of each dirty module are
+     * cleared and every module intersecting them is redrawn. Frame listeners are notified of every frame, changed or
+     * not. The time taken, including listeners, is recorded in {@link #metrics()}.
+     *
+     * @param width  frame width in pixels
+     * @param height frame height in pixels
+     * @return whether or not any part of the frame was redrawn
+     */
+    public synchronized boolean render(int width, int height) {
+        if (width <= 0 || height <= 0)
+            return false;
+
+        metrics.frameStarted();
+        boolean changed = renderTelemetry(width, height);
+
+        for (FrameListener l : frameListeners)
+            l.frameRendered(telemetryImage, changed);
+
+        metrics.frameFinished();
+        return changed;
+    }
+
+    /**
+     * Redraws the damaged regions of the back buffer.
+     *
+     * @param width  frame width in pixels
+     * @param height frame height in pixels
+     * @return whether or not any part of the frame was redrawn
+     */
+    private boolean renderTelemetry(int width, int height) {
+        // Reallocate the back buffer only on resize
+        if (telemetryImage == null || telemetryImage.getWidth() != width || telemetryImage.getHeight() != height) {
+            telemetryImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            composeImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            fullRedraw = true;
+        }
+
+        damage.clear();
+        LinkedHashMap<String, Telemetry> snapshot = telemetryMap;
+        Collection<Telemetry> modules = snapshot.values();
+
+        if (fullRedraw) {
+            fullRedraw = false;
+            damage.add(new Rectangle(0, 0, width, height));
+
+            for (Telemetry t : modules)
+                t.markClean();
+        } else {
+            // Collect the regions vacated and occupied by each changed module
+            for (Telemetry t : modules) {
+                if (!t.dirty())
+                    continue;
+
+                // Clear the flag before drawing so that concurrent updates are caught next frame
+                t.markClean();
+                Rectangle old = drawnBounds.get(t);
+
+                if (old != null)
+                    addDamage(old);
+
+                addDamage(bounds(t));
+            }
+        }
+
+        if (damage.isEmpty())
+            return false;
+
+        // Every module touching a damaged region is redrawn, in drawing order
+        ArrayList<Layer> layers = new ArrayList<>();
+
+        for (Map.Entry<String, Telemetry> e : snapshot.entrySet()) {
+            Rectangle b = bounds(e.getValue());
+
+            for (Rectangle region : damage) {
+                if (b.intersects(region)) {
+                    layers.add(new Layer(e.getKey(), e.getValue(), b));
+                    drawnBounds.put(e.getValue(), b);
+                    break;
+                }
+            }
+        }
+
+        // Colors are read once so a theme change never splits a frame
+        Color bg = bgColor, text = textColor;
+
+        if (renderPool == null) {
+            for (Layer layer : layers)
+                prepare(layer);
+
+            Graphics2D g = composeImage.createGraphics();
+            composite(g, atlas, layers, null, bg, text, null);
+            g.dispose();
+        } else {
+            renderParallel(layers, bg, text);
+        }
+
+        copyDamage();
+
+        for (Layer layer : layers)
+            metrics.moduleDrawn(layer.identifier, layer.nanos);
+
+        return true;
+    }
+
+    /**
+     * Prepares and composites a frame on the render pool. Modules are prepared one per task, then the frame is split
+     * into horizontal tiles, twice as many as there are threads, and each damaged tile is composited by its own task.
+     *
+     * @param layers modules to redraw, in drawing order
+     * @param bg     background color
+     * @param text   default text color
+     */
+    private void renderParallel(List<Layer> layers, Color bg, Color text) {
+        ArrayList<Callable<long[]>> tasks = new ArrayList<>();
+
+        for (Layer layer : layers) {
+            tasks.add(() -> {
+                prepare(layer);
+                return null;
+            });
+        }
+
+        invokeAll(tasks);
+        tasks.clear();
+
+        int tiles = renderThreads * 2;
+        int tileHeight = (telemetryImage.getHeight() + tiles - 1) / tiles;
+
+        if (tileAtlases.length != tiles) {
+            tileAtlases = new GlyphAtlas[tiles];
+
+            for (int i = 0; i < tiles; i++)
+                tileAtlases[i] = new GlyphAtlas(atlas);
+        }
+
+        for (int i = 0; i < tiles; i++) {
+            Rectangle tile = new Rectangle(0, i * tileHeight, telemetryImage.getWidth(), tileHeight);
+            GlyphAtlas tileAtlas = tileAtlases[i];
+
+            if (!touchesDamage(tile))
+                continue;
+
+            tasks.add(() -> {
+                long[] nanos = new long[layers.size()];
+                Graphics2D g = composeImage.createGraphics();
+
+                try {
+                    composite(g, tileAtlas, layers, tile, bg, text, nanos);
+                } finally {
+                    g.dispose();
+                }
+
+                return nanos;
+            });
+        }
+
+        // Drawing time is split across tiles; charge each module the total
+        for (long[] nanos : invokeAll(tasks))
+            for (int i = 0; i < nanos.length; i++)
+                layers.get(i).nanos += nanos[i];
+    }
+
+    /**
+     * Runs tasks on the render pool and waits for all of them. A task's exception is rethrown on the rendering thread,
+     * as it would have been thrown by a serial frame. Memory allocated by each task is charged to the frame's metrics.
+     *
+     * @param tasks tasks to run
+     * @return task results, in order
+     */
+    private List<long[]> invokeAll(List<Callable<long[]>> tasks) {
+        ArrayList<long[]> results = new ArrayList<>(tasks.size());
+        ArrayList<Callable<long[]>> measured = new ArrayList<>(tasks.size());
+
+        for (Callable<long[]> task : tasks) {
+            measured.add(() -> {
+                long start = metrics.allocatedBytes();
+
+                try {
+                    return task.call();
+                } finally {
+                    metrics.workerAllocated(metrics.allocatedBytes() - start);
+                }
+            });
+        }
+
+        try {
+            for (Future<long[]> f : renderPool.invokeAll(measured))
+                results.add(f.get());
+        } catch (InterruptedException e) {
+            // The frame is incomplete; draw all of it next time
+            fullRedraw = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            fullRedraw = true;
+
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+
+            throw new IllegalStateException(e.getCause());
+        }
+
+        return results;
+    }
+
+    /**
+     * Copies every damaged region of the composition buffer into the back buffer. The copy goes through the back
+     * buffer's raster, which marks it changed without exposing its pixels.
+     */
+    private void copyDamage() {
+        WritableRaster source = composeImage.getRaster(), target = telemetryImage.getRaster();
+        Rectangle frame = new Rectangle(composeImage.getWidth(), composeImage.getHeight());
+
+        for (Rectangle region : damage) {
+            Rectangle r = region.intersection(frame);
+
+            if (!r.isEmpty())
+                target.setDataElements(0, 0, source.createChild(r.x, r.y, r.width, r.height, r.x, r.y, null));
+        }
+    }
+
+    /**
+     * Checks whether a tile overlaps any damaged region.
+     *
+     * @param tile tile in frame coordinates
+     * @return whether or not the tile needs redrawing
+     */
+    private boolean touchesDamage(Rectangle tile) {
+        for (Rectangle region : damage)
+            if (region.intersects(tile))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Brings a module up to date for drawing: images are rendered, and text is snapshotted and compiled. Modules are
+     * independent, so different modules may be prepared on different threads.
+     *
+     * @param layer module to prepare
+     */
+    private void prepare(Layer layer) {
+        long start = System.nanoTime();
+        Telemetry t = layer.telemetry;
+
+        // TextTelemetry instances
+        if (t instanceof TextTelemetry) {
+            TextTelemetry tel = (TextTelemetry) t;
+            layer.lines = tel.data();
+
+            // Only process metacharacters if necessary
+            if (tel.coded()) {
+                layer.runs = new FormattedText[layer.lines.length];
+
+                for (int i = 0; i < layer.lines.length; i++)
+                    layer.runs[i] = tel.formattedLine(i, layer.lines[i]);
+            }
+        } else if (t instanceof ImageTelemetry) {
+            layer.image = ((ImageTelemetry) t).render();
+        }
+
+        layer.nanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Clears the damaged regions within a tile and draws every prepared module over them, in drawing order.
+     *
+     * @param g      graphics of the back buffer
+     * @param atlas  glyph atlas to draw text with
+     * @param layers prepared modules, in drawing order
+     * @param tile   region to draw within, or null for the whole frame
+     * @param bg     background color
+     * @param text   default text color
+     * @param nanos  drawing time of each layer, or null to add it to the layers directly
+     */
+    private void composite(Graphics2D g, GlyphAtlas atlas, List<Layer> layers, Rectangle tile, Color bg, Color text,
+                           long[] nanos) {
+        for (Rectangle region : damage) {
+            Rectangle clip = tile == null ? region : region.intersection(tile);
+
+            if (clip.isEmpty())
+                continue;
+
+            g.setClip(clip);
+            g.setColor(bg);
+            g.fill(clip);
+            atlas.setTarget(composeImage, clip);
+
+            for (int i = 0; i < layers.size(); i++) {
+                Layer layer = layers.get(i);
+
+                if (!layer.bounds.intersects(clip))
+                    continue;
+
+                long start = System.nanoTime();
+                drawLayer(g, atlas, layer, text);
+
+                if (nanos == null)
+                    layer.nanos += System.nanoTime() - start;
+                else
+                    nanos[i] += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Draws a single prepared module.
+     *
+     * @param g     graphics of the back buffer
+     * @param atlas glyph atlas to draw text with
+     * @param layer prepared module
+     * @param text  default text color
+     */
+    private void drawLayer(Graphics2D g, GlyphAtlas atlas, Layer layer, Color text) {
+        g.setFont(font);
+        g.setColor(text);
+
+        if (layer.lines != null) {
+            // Draw each line separately
+            for (int i = 0; i < layer.lines.length; i++) {
+                int y = layer.y + i * lineHeight;
+
+                if (layer.runs != null)
+                    drawTextFormatted(g, atlas, layer.x, y, layer.runs[i], text);
+                else if (layer.lines[i] != null)
+                    atlas.drawString(g, layer.lines[i], layer.x, y, Font.PLAIN, text);
+            }
+        } else if (layer.image != null) {
+            g.drawImage(layer.image, layer.x, layer.y, null);
+        }
+    }
+
+    /**
+     * Draws a line of coded text that has been compiled into styled runs. Glyphs are filled from a
+     * {@link GlyphAtlas} rather than drawn by the text pipeline.
+     *
+     * @param g     graphics of the back buffer
+     * @param atlas glyph atlas to draw with
+     * @param x     horizontal position from surface left
+     * @param y     vertical position from surface top
+     * @param line  compiled text to draw
+     * @param text  default text color
+     */
+    private void drawTextFormatted(Graphics2D g, GlyphAtlas atlas, int x, int y, FormattedText line, Color text) {
+        if (line == null)
+            return;
+
+        for (FormattedText.Run run : line.runs()) {
+            Color color = run.color == null ? text : run.color;
+            atlas.drawString(g, run.text, x + run.offset, y + lineHeight, run.weight, color);
+        }
+    }
+
+    /**
+     * Gets the screen region a telemetry module may draw into. Uncoded text is drawn with its baseline at the module's
+     * y position, so text bounds are extended up by a line; coded text is drawn a line lower, so the last line's
+     * descenders fall below the module's height, and bounds are extended down by a line as well. A line of padding on
+     * the right also covers glyph overhang.
+     *
+     * @param t telemetry
+     * @return bounding rectangle in frame coordinates
+     */
+    private Rectangle bounds(Telemetry t) {
+        if (t instanceof TextTelemetry)
+            return new Rectangle(t.x(), t.y() - lineHeight, t.width() + lineHeight, t.height() + 2 * lineHeight);
+
+        return new Rectangle(t.x(), t.y(), t.width(), t.height());
+    }
+
+    /**
+     * Adds a region to the current frame's damage list, merging it with any regions it overlaps.
+     *
+     * @param region region to be cleared and redrawn
+     */
+    private void addDamage(Rectangle region) {
+        Rectangle merged = new Rectangle(region);
+
+        for (int i = damage.size() - 1; i >= 0; i--) {
+            if (damage.get(i).intersects(merged)) {
+                merged.add(damage.remove(i));
+                // The grown region may now overlap regions that were already checked
+                i = damage.size();
+            }
+        }
+
+        damage.add(merged);
+    }
+
+    /**
+     * Sets the number of threads frames are drawn with. With more than one thread, modules are prepared and the frame
+     * is composited in parallel on a pool of that many daemon threads; with one, frames are drawn entirely on the
+     * rendering thread. Output is identical either way.
+     *
+     * @param threads number of render threads, at least 1
+     */
+    public synchronized void setRenderThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Render threads must be at least 1");
+
+        if (renderPool != null)
+            renderPool.shutdown();
+
+        renderThreads = threads;
+        renderPool = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Onyx render worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Gets the number of threads frames are drawn with.
+     *
+     * @return number of render threads
+     */
+    public int renderThreads() {
+        return renderThreads;
+    }
+
+    /**
+     * Forces every telemetry module to be redrawn on the next frame.
+     */
+    public void redrawAll() {
+        fullRedraw = true;
+    }
+
+    /**
+     * Gets the back buffer holding the most recently rendered frame. The buffer is redrawn in place by
+     * {@link #render(int, int)}, so it should only be read by the thread that renders, or while synchronized on this
+     * renderer.
+     *
+     * @return back buffer, or null if nothing has been rendered
+     */
+    public BufferedImage frame() {
+        return telemetryImage;
+    }
+
+    /**
+     * Gets the statistics collected while rendering frames.
+     *
+     * @return render metrics
+     */
+    public RenderMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds a {@link MetricsTelemetry} overlay showing this renderer's metrics, refreshed twice a second. Highlighted
+     * values return to a color code drawn in the theme's text color, if this renderer has one.
+     *
+     * @param x horizontal position from interface left
+     * @param y vertical position from interface top
+     * @return the overlay module
+     */
+    public MetricsTelemetry addMetricsOverlay(int x, int y) {
+        MetricsTelemetry overlay = new MetricsTelemetry(x, y, fontMetrics, metrics, 500);
+        String reset = colorCode(textColor);
+
+        if (reset != null) {
+            overlay.setColorCodes("g", "c", reset);
+            overlay.refresh();
+        }
+
+        addTelemetry(METRICS_OVERLAY, overlay);
+        addFrameListener(overlay);
+        return overlay;
+    }
+
+    /**
+     * Registers a listener to be notified each time a frame is rendered.
+     *
+     * @param listener frame listener
+     */
+    public void addFrameListener(FrameListener listener) {
+        frameListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a frame listener.
+     *
+     * @param listener frame listener
+     */
+    public void removeFrameListener(FrameListener listener) {
+        frameListeners.remove(listener);
+    }
+
+    /**
+     * Adds a new piece of telemetry to the frame.
+     *
+     * @param identifier identifying name
+     * @param tel        telemetry instance
+     */
+    public synchronized void addTelemetry(String identifier, Telemetry tel) {
+        // Copy on write so a frame being collected keeps iterating the old map
+        LinkedHashMap<String, Telemetry> next = new LinkedHashMap<>(telemetryMap);
+        Telemetry old = next.put(identifier, tel);
+        telemetryMap = next;
+
+        // The replaced module's pixels need clearing
+        if (old != null)
+            redrawAll();
+
+        if (tel instanceof TextTelemetry)
+            ((TextTelemetry) tel).setFormatter(formatter);
+
+        tel.markDirty();
+    }
+
+    /**
+     * Gets a telemetry instance by name.
+     *
+     * @param identifier identifying name
+     * @return corresponding telemetry object, or null if not found
+     */
+    public Telemetry getTelemetry(String identifier) {
+        return telemetryMap.get(identifier);
+    }
+
+    /**
+     * Gets the identifier of every telemetry module, in drawing order.
+     *
+     * @return identifying names
+     */
+    public Set<String> identifiers() {
+        return Collections.unmodifiableSet(telemetryMap.keySet());
+    }
+
+    /**
+     * Gets every telemetry module, in drawing order.
+     *
+     * @return telemetry modules
+     */
+    public Collection<Telemetry> telemetry() {
+        return telemetryMap.values();
+    }
+
+    /**
+     * Adds a new color code, or overwrites a native one, for this renderer only. The renderer's code table is
+     * recompiled and every coded line is recompiled with it.
+     *
+     * @param code format code to follow '!'
+     * @param col  color
+     */
+    public void addColorCode(String code, Color col) {
+        synchronized (colorCodes) {
+            colorCodes.put(code, col);
+            formatter.setCodes(new CodeTable(colorCodes, Display.WEIGHT_CODES));
+        }
+
+        // Lines compiled before the code existed must be recompiled
+        for (Telemetry t : telemetryMap.values())
+            if (t instanceof TextTelemetry)
+                ((TextTelemetry) t).setFormatter(formatter);
+
+        redrawAll();
+    }
+
+    /**
+     * Finds the shortest color code drawing in a color.
+     *
+     * @param col color
+     * @return color code, or null if no code draws in the color
+     */
+    public String colorCode(Color col) {
+        String found = null;
+
+        synchronized (colorCodes) {
+            for (Map.Entry<String, Color> e : colorCodes.entrySet())
+                if (e.getValue().equals(col) && (found == null || e.getKey().length() < found.length()))
+                    found = e.getKey();
+        }
+
+        return found;
+    }
+
+    /**
+     * Gets the compiled color and weight codes used for this renderer's coded text.
+     *
+     * @return code table
+     */
+    public CodeTable codes() {
+        return formatter.codes();
+    }
+
+    /**
+     * Updates the Theme used for coloring.
+     *
+     * @param theme color theme
+     */
+    public void setTheme(Theme theme) {
+        bgColor = theme.getColor("bg");
+        textColor = theme.getColor("text");
+
+        redrawAll();
+    }
+
+    /**
+     * Gets the background color of the current theme.
+     *
+     * @return background color
+     */
+    public Color background() {
+        return bgColor;
+    }
+
+    /**
+     * Gets the default text color of the current theme.
+     *
+     * @return text color
+     */
+    public Color textColor() {
+        return textColor;
+    }
+
+    /**
+     * Gets the {@link FontMetrics} used for text dimension calculations.
+     *
+     * @return font metrics
+     */
+    public FontMetrics fontMetrics() {
+        return fontMetrics;
+    }
+
+    /**
+     * Gets the font used for drawing.
+     *
+     * @return display font
+     */
+    public Font font() {
+        return font;
+    }
+
+    /**
+     * Gets the height in pixels of a single line of text.
+     *
+     * @return line height in pixels
+     */
+    public int lineHeight() {
+        return lineHeight;
+    }
+}
@@ -0,0 +1,190 @@
+package onyx.graphics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the refresh cadence of a display. Frames are requested on a dedicated thread at a fixed rate measured against
+ * absolute deadlines, so time spent rendering does not cause the rate to drift.
+ * <p>
+ * If the previous frame has not been reported complete by the time the next one is due, or the scheduler falls more
+ * than a full period behind, frames are skipped rather than queued. Skipped frames are counted in
+ * {@link #droppedFrames()}.
+ * <p>
+ * A frame that is never reported complete, such as a repaint that Swing coalesced away or never delivered to a hidden
+ * window, is given up on after {@link #STALL_PERIODS} periods, and the next frame is requested anyway.
+ */
+public class FrameScheduler {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    /**
+     * Number of frame periods a requested frame may go unreported before it is assumed lost.
+     */
+    public static final int STALL_PERIODS = 4;
+
+    private final Runnable frameTask;
+    private final AtomicBoolean frameInFlight = new AtomicBoolean(false);
+    private final String name;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile int fps;
+    private volatile long frames, droppedFrames;
+    // Only touched by the scheduling thread
+    private long requestedAt;
+
+    /**
+     * Creates a stopped scheduler.
+     *
+     * @param name      name of the scheduling thread
+     * @param fps       target frame rate (Hz)
+     * @param frameTask task run on the scheduling thread each time a frame is due
+     */
+    public FrameScheduler(String name, int fps, Runnable frameTask) {
+        this.name = name;
+        this.frameTask = frameTask;
+        setRefreshRate(fps);
+    }
+
+    /**
+     * Starts requesting frames. Does nothing if the scheduler is already running.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        frameInFlight.set(false);
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops requesting frames and waits for the scheduling thread to exit.
+     */
+    public synchronized void stop() {
+        if (!running)
+            return;
+
+        running = false;
+        LockSupport.unpark(thread);
+
+        // The frame task may be the caller, in which case there is nothing to wait for
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        thread = null;
+    }
+
+    /**
+     * Gets whether or not the scheduler is running.
+     *
+     * @return if frames are being requested
+     */
+    public boolean running() {
+        return running;
+    }
+
+    /**
+     * Sets the target frame rate. Takes effect from the next frame.
+     *
+     * @param fps frequency (Hz)
+     */
+    public void setRefreshRate(int fps) {
+        if (fps <= 0)
+            throw new IllegalArgumentException("refresh rate must be positive: " + fps);
+
+        this.fps = fps;
+    }
+
+    /**
+     * Gets the target frame rate.
+     *
+     * @return frequency (Hz)
+     */
+    public int refreshRate() {
+        return fps;
+    }
+
+    /**
+     * Reports that the most recently requested frame has finished rendering, allowing the next one to be requested.
+     * Must be called once per frame, either at the end of the frame task or from whichever thread finishes the
+     * frame.
+     */
+    public void frameComplete() {
+        frameInFlight.set(false);
+    }
+
+    /**
+     * Gets the number of frames requested since the scheduler was created.
+     *
+     * @return frame count
+     */
+    public long frames() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of frames skipped because rendering fell behind.
+     *
+     * @return dropped frame count
+     */
+    public long droppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Runs the frame task. A task that throws has not rendered a frame, so the frame is reported complete for it and
+     * the error is passed to the thread's uncaught exception handler without stopping the scheduler.
+     */
+    private void requestFrame() {
+        try {
+            frameTask.run();
+        } catch (RuntimeException e) {
+            frameComplete();
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+
+    /**
+     * Scheduling loop.
+     */
+    private void run() {
+        long period = NANOS_PER_SECOND / fps;
+        long deadline = System.nanoTime() + period;
+
+        while (running) {
+            long now = System.nanoTime();
+
+            if (now < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+
+            // Skip every deadline that passed while we were behind instead of bursting to catch up
+            long missed = (now - deadline) / period;
+            if (missed > 0) {
+                droppedFrames += missed;
+                deadline += missed * period;
+            }
+
+            // Skip this frame if the last one is still rendering, unless it has been so long that it was lost
+            if (frameInFlight.compareAndSet(false, true) || now - requestedAt > STALL_PERIODS * period) {
+                frames++;
+                requestedAt = now;
+                requestFrame();
+            } else {
+                droppedFrames++;
+            }
+
+            // Rate changes apply from the next deadline on
+            period = NANOS_PER_SECOND / fps;
+            deadline += period;
+        }
+    }
+}
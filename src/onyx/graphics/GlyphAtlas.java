@@ -0,0 +1,249 @@
+package onyx.graphics;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A cache of pre-rasterized glyphs for the fonts of a {@link TextFormatter}. The printable ASCII glyphs of each weight
+ * are rasterized once into row spans of covered pixels, and text is then drawn by filling those spans straight into the
+ * pixels of the target, instead of going through the text pipeline.
+ * <p>
+ * Taking an image's pixel array stops Java2D from caching the image on the graphics device, so targets should be
+ * images that are never shown directly; a {@link FrameRenderer} draws into a composition buffer and copies the result
+ * into its displayed back buffer.
+ * <p>
+ * Glyphs are rasterized with the default rendering hints of an image surface, which are also the hints text is drawn
+ * with by a {@link FrameRenderer}. Those hints do not antialias text, so every glyph pixel is either fully covered or
+ * untouched, and span fills match {@code drawString} pixel for pixel in any opaque color. Text that the spans cannot
+ * reproduce (characters outside the atlas, translucent colors, or targets that are not integer RGB images) is drawn
+ * with {@code drawString}.
+ * <p>
+ * Each atlas draws into one target at a time, so threads drawing in parallel each need their own atlas; atlases created
+ * with {@link #GlyphAtlas(GlyphAtlas)} share their rasterized glyphs, which are safe to share.
+ */
+class GlyphAtlas {
+    private static final char FIRST = ' ', LAST = '~';
+    private static final int GLYPHS = LAST - FIRST + 1;
+
+    private final TextFormatter formatter;
+    private final Layout[] layouts;
+    private int[] pixels;
+    private int scanline;
+    private int clipX0, clipY0, clipX1, clipY1;
+
+    /**
+     * The rasterized glyphs of one weight.
+     */
+    private static class Layout {
+        // Per glyph, triples of (row, first column, end column) relative to the glyph origin
+        final int[][] spans = new int[GLYPHS][];
+        final int[] advance = new int[GLYPHS];
+        // Whether or not every glyph pixel was fully covered
+        boolean opaque = true;
+    }
+
+    /**
+     * Creates an empty atlas for the fonts of a formatter. Each weight is rasterized the first time it is drawn.
+     *
+     * @param formatter formatter holding the font of each weight
+     */
+    GlyphAtlas(TextFormatter formatter) {
+        this.formatter = formatter;
+        layouts = new Layout[4];
+    }
+
+    /**
+     * Creates an atlas with its own target that shares the rasterized glyphs of another.
+     *
+     * @param shared atlas whose glyphs to share
+     */
+    GlyphAtlas(GlyphAtlas shared) {
+        formatter = shared.formatter;
+        layouts = shared.layouts;
+    }
+
+    /**
+     * Sets the image that following calls to {@link #drawString} draw into, and the region they may change. The
+     * target's pixels are written directly, so it should not be an image that is displayed.
+     *
+     * @param target offscreen image
+     * @param clip   region to draw within
+     */
+    void setTarget(BufferedImage target, Rectangle clip) {
+        Rectangle visible = clip.intersection(new Rectangle(target.getWidth(), target.getHeight()));
+
+        // Span fills only understand plain integer RGB pixels
+        if (target.getType() != BufferedImage.TYPE_INT_RGB || visible.isEmpty()) {
+            pixels = null;
+            return;
+        }
+
+        pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        scanline = target.getWidth();
+        clipX0 = visible.x;
+        clipY0 = visible.y;
+        clipX1 = visible.x + visible.width;
+        clipY1 = visible.y + visible.height;
+    }
+
+    /**
+     * Draws text with its baseline at some position, as {@code drawString} would on the target image.
+     *
+     * @param g      graphics of the target image, used for text the atlas cannot draw
+     * @param text   text to draw
+     * @param x      horizontal position of the first glyph's origin
+     * @param y      baseline position
+     * @param weight font style constant
+     * @param color  text color
+     */
+    void drawString(Graphics2D g, String text, int x, int y, int weight, Color color) {
+        Layout layout = layout(weight);
+        int rgb = color.getRGB();
+
+        if (pixels == null || !layout.opaque || rgb >>> 24 != 0xFF) {
+            fallback(g, text, x, y, weight, color);
+            return;
+        }
+
+        // Integer RGB pixels leave the alpha byte clear
+        rgb &= 0xFFFFFF;
+
+        for (int i = 0; i < text.length(); i++) {
+            int glyph = text.charAt(i) - FIRST;
+
+            // Hand anything the atlas does not hold to the text pipeline, from that character on
+            if (glyph < 0 || glyph >= GLYPHS) {
+                fallback(g, text.substring(i), x, y, weight, color);
+                return;
+            }
+
+            int[] spans = layout.spans[glyph];
+
+            for (int s = 0; s < spans.length; s += 3) {
+                int py = y + spans[s];
+
+                if (py < clipY0 || py >= clipY1)
+                    continue;
+
+                int px0 = Math.max(x + spans[s + 1], clipX0);
+                int px1 = Math.min(x + spans[s + 2], clipX1);
+
+                if (px0 < px1)
+                    Arrays.fill(pixels, py * scanline + px0, py * scanline + px1, rgb);
+            }
+
+            x += layout.advance[glyph];
+        }
+    }
+
+    /**
+     * Draws text with the text pipeline.
+     *
+     * @param g      graphics of the target image
+     * @param text   text to draw
+     * @param x      horizontal position of the first glyph's origin
+     * @param y      baseline position
+     * @param weight font style constant
+     * @param color  text color
+     */
+    private void fallback(Graphics2D g, String text, int x, int y, int weight, Color color) {
+        g.setColor(color);
+        g.setFont(formatter.font(weight));
+        g.drawString(text, x, y);
+    }
+
+    /**
+     * Gets the rasterized glyphs of a weight, rasterizing them the first time.
+     *
+     * @param weight font style constant
+     * @return glyph layout
+     */
+    private Layout layout(int weight) {
+        synchronized (layouts) {
+            if (layouts[weight] == null)
+                layouts[weight] = rasterize(weight);
+
+            return layouts[weight];
+        }
+    }
+
+    /**
+     * Rasterizes the glyphs of a weight.
+     *
+     * @param weight font style constant
+     * @return glyph layout
+     */
+    private Layout rasterize(int weight) {
+        Font font = formatter.font(weight);
+        FontMetrics fm = formatter.fontMetrics(weight);
+        FontRenderContext frc = fm.getFontRenderContext();
+        Layout layout = new Layout();
+
+        for (int i = 0; i < GLYPHS; i++) {
+            String glyph = String.valueOf((char) (FIRST + i));
+            GlyphVector gv = font.createGlyphVector(frc, glyph);
+            Rectangle bounds = gv.getPixelBounds(frc, 0, 0);
+            layout.advance[i] = fm.charWidth(FIRST + i);
+
+            if (bounds.isEmpty()) {
+                layout.spans[i] = new int[0];
+                continue;
+            }
+
+            // Pad the tile so rounding never clips the glyph
+            bounds.grow(1, 1);
+            BufferedImage tile = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = tile.createGraphics();
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            g.drawString(glyph, -bounds.x, -bounds.y);
+            g.dispose();
+
+            layout.spans[i] = spans(tile, bounds, layout);
+        }
+
+        return layout;
+    }
+
+    /**
+     * Collects the horizontal runs of covered pixels in a glyph tile.
+     *
+     * @param tile   rasterized glyph
+     * @param bounds tile bounds relative to the glyph origin
+     * @param layout layout to flag if any pixel is partially covered
+     * @return triples of (row, first column, end column) relative to the glyph origin
+     */
+    private static int[] spans(BufferedImage tile, Rectangle bounds, Layout layout) {
+        int[] spans = new int[24];
+        int count = 0;
+
+        for (int row = 0; row < tile.getHeight(); row++) {
+            int start = -1;
+
+            for (int col = 0; col <= tile.getWidth(); col++) {
+                int alpha = col < tile.getWidth() ? tile.getRGB(col, row) >>> 24 : 0;
+
+                if (alpha != 0 && alpha != 0xFF)
+                    layout.opaque = false;
+
+                if (alpha != 0 && start < 0) {
+                    start = col;
+                } else if (alpha == 0 && start >= 0) {
+                    if (count + 3 > spans.length)
+                        spans = Arrays.copyOf(spans, spans.length * 2);
+
+                    spans[count++] = bounds.y + row;
+                    spans[count++] = bounds.x + start;
+                    spans[count++] = bounds.x + col;
+                    start = -1;
+                }
+            }
+        }
+
+        return Arrays.copyOf(spans, count);
+    }
+}
@@ -0,0 +1,277 @@
+package onyx.graphics;
+
+import onyx.telemetry.MetricsTelemetry;
+import onyx.telemetry.Telemetry;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A display that renders telemetry into an offscreen image instead of a window. It shares its rendering code with
+ * {@link Display} through {@link FrameRenderer}, uses no Swing components, and works under
+ * {@code java.awt.headless=true}, so dashboards can be generated on servers and in CI.
+ * <p>
+ * Frames are rendered at the refresh rate on a dedicated thread once {@link #start()} is called, or one at a time with
+ * {@link #renderFrame()}. The most recent frame is available from {@link #latestFrame()}.
+ */
+public class HeadlessDisplay {
+    private final FrameRenderer renderer;
+    private final FrameScheduler scheduler;
+    private final int width, height;
+
+    /**
+     * Initializes an empty display.
+     *
+     * @param width    width in pixels
+     * @param height   height in pixels
+     * @param fontSize font size
+     * @param fontName font name
+     * @param theme    display theme
+     */
+    public HeadlessDisplay(int width, int height, int fontSize, String fontName, Theme theme) {
+        this.width = width;
+        this.height = height;
+
+        renderer = new FrameRenderer(fontSize, fontName, theme);
+        scheduler = new FrameScheduler("Onyx headless display", 60, this::scheduledFrame);
+        renderer.metrics().setScheduler(scheduler);
+    }
+
+    /**
+     * Sets the rate at which frames are rendered once started.
+     *
+     * @param fps frequency (Hz)
+     */
+    public void setRefreshRate(int fps) {
+        scheduler.setRefreshRate(fps);
+    }
+
+    /**
+     * Starts rendering frames at the refresh rate on a dedicated thread.
+     */
+    public void start() {
+        scheduler.start();
+    }
+
+    /**
+     * Stops the automatic rendering started by {@link #start()}.
+     */
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * Gets the scheduler driving automatic rendering.
+     *
+     * @return frame scheduler
+     */
+    public FrameScheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Renders a single frame on the calling thread.
+     *
+     * @return whether or not any part of the frame changed
+     */
+    public boolean renderFrame() {
+        return renderer.render(width, height);
+    }
+
+    /**
+     * Frame task run by the scheduler.
+     */
+    private void scheduledFrame() {
+        try {
+            renderFrame();
+        } finally {
+            scheduler.frameComplete();
+        }
+    }
+
+    /**
+     * Copies the most recently rendered frame.
+     *
+     * @return copy of the latest frame, or null if no frame has been rendered
+     */
+    public BufferedImage latestFrame() {
+        synchronized (renderer) {
+            BufferedImage frame = renderer.frame();
+
+            if (frame == null)
+                return null;
+
+            BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), frame.getType());
+            frame.copyData(copy.getRaster());
+            return copy;
+        }
+    }
+
+    /**
+     * Copies the most recently rendered frame into an existing image of the same size, avoiding an allocation.
+     *
+     * @param dest destination image
+     * @return false if no frame has been rendered
+     */
+    public boolean latestFrame(BufferedImage dest) {
+        synchronized (renderer) {
+            BufferedImage frame = renderer.frame();
+
+            if (frame == null)
+                return false;
+
+            Graphics2D g = dest.createGraphics();
+            g.drawImage(frame, 0, 0, null);
+            g.dispose();
+            return true;
+        }
+    }
+
+    /**
+     * Forces every telemetry module to be redrawn on the next frame.
+     */
+    public void redrawAll() {
+        renderer.redrawAll();
+    }
+
+    /**
+     * Registers a listener to be notified each time a frame is rendered, e.g. a {@link onyx.capture.FrameRecorder}.
+     *
+     * @param listener frame listener
+     */
+    public void addFrameListener(FrameListener listener) {
+        renderer.addFrameListener(listener);
+    }
+
+    /**
+     * Unregisters a frame listener.
+     *
+     * @param listener frame listener
+     */
+    public void removeFrameListener(FrameListener listener) {
+        renderer.removeFrameListener(listener);
+    }
+
+    /**
+     * Adds a new piece of telemetry to the display.
+     *
+     * @param identifier identifying name
+     * @param tel        telemetry instance
+     */
+    public void addTelemetry(String identifier, Telemetry tel) {
+        renderer.addTelemetry(identifier, tel);
+    }
+
+    /**
+     * Gets a telemetry instance by name.
+     *
+     * @param identifier identifying name
+     * @return corresponding telemetry object, or null if not found
+     */
+    public Telemetry getTelemetry(String identifier) {
+        return renderer.getTelemetry(identifier);
+    }
+
+    /**
+     * Adds a new color code, or overwrites a native one, for this display only.
+     *
+     * @param code format code to follow '!'
+     * @param col  color
+     */
+    public void addColorCode(String code, Color col) {
+        renderer.addColorCode(code, col);
+    }
+
+    /**
+     * Updates the Theme used for coloring.
+     *
+     * @param theme color theme
+     */
+    public void setTheme(Theme theme) {
+        renderer.setTheme(theme);
+    }
+
+    /**
+     * Gets the {@link FontMetrics} used for text dimension calculations.
+     *
+     * @return font metrics
+     */
+    public FontMetrics fontMetrics() {
+        return renderer.fontMetrics();
+    }
+
+    /**
+     * Gets the font used for drawing.
+     *
+     * @return display font
+     */
+    public Font font() {
+        return renderer.font();
+    }
+
+    /**
+     * Gets the height in pixels of a single line of text.
+     *
+     * @return line height in pixels
+     */
+    public int lineHeight() {
+        return renderer.lineHeight();
+    }
+
+    /**
+     * Gets the statistics collected while rendering this display's frames.
+     *
+     * @return render metrics
+     */
+    public RenderMetrics metrics() {
+        return renderer.metrics();
+    }
+
+    /**
+     * Adds an overlay showing this display's render metrics.
+     *
+     * @param x horizontal position from interface left
+     * @param y vertical position from interface top
+     * @return the overlay module
+     */
+    public MetricsTelemetry addMetricsOverlay(int x, int y) {
+        return renderer.addMetricsOverlay(x, y);
+    }
+
+    /**
+     * Sets the number of threads this display's frames are drawn with.
+     *
+     * @param threads number of render threads, at least 1
+     * @see FrameRenderer#setRenderThreads(int)
+     */
+    public void setRenderThreads(int threads) {
+        renderer.setRenderThreads(threads);
+    }
+
+    /**
+     * Gets the renderer that draws this display's frames.
+     *
+     * @return frame renderer
+     */
+    public FrameRenderer renderer() {
+        return renderer;
+    }
+
+    /**
+     * Gets the frame width.
+     *
+     * @return width in pixels
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Gets the frame height.
+     *
+     * @return height in pixels
+     */
+    public int height() {
+        return height;
+    }
+}
@@ -0,0 +1,303 @@
+package onyx.graphics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Collects per-frame statistics from a {@link FrameRenderer}: a frame time histogram, the time spent drawing each
+ * telemetry module, achieved versus target frame rate, dropped frames, bytes allocated per frame and the time taken to
+ * blit frames to the screen. Time not spent in modules or the blit is spent clearing and compositing the back buffer.
+ * <p>
+ * Metrics are recorded by the rendering thread and can be read from any thread, directly or over JMX once
+ * {@link #register(String)} has been called.
+ */
+public class RenderMetrics implements RenderMetricsMXBean {
+    private static final int HISTOGRAM_BUCKETS = 24, RATE_WINDOW = 64;
+    // Weight given to the newest sample in recent-average metrics
+    private static final double SMOOTHING = 0.1;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean allocations;
+    private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+    private final long[] frameStarts = new long[RATE_WINDOW];
+    private final HashMap<String, double[]> moduleMicros = new HashMap<>();
+    private volatile FrameScheduler scheduler;
+    private ObjectName objectName;
+    private long frames, totalFrameNanos, maxFrameNanos, totalBytes;
+    private double blitMicros;
+    private long frameStart, frameStartBytes, frameWorkerBytes;
+
+    /**
+     * Creates an empty set of metrics.
+     */
+    public RenderMetrics() {
+        allocations = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+
+    /**
+     * Attaches the scheduler driving the renderer, which supplies the target frame rate and dropped frame count.
+     *
+     * @param scheduler frame scheduler
+     */
+    public void setScheduler(FrameScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Marks the start of a frame. Called by the rendering thread.
+     */
+    void frameStarted() {
+        frameStartBytes = allocatedBytes();
+        frameStart = System.nanoTime();
+    }
+
+    /**
+     * Gets the number of bytes the calling thread has allocated over its lifetime. Render pool tasks take this before
+     * and after running and report the difference with {@link #workerAllocated(long)}.
+     *
+     * @return allocated bytes, or 0 if allocation measurement is unsupported
+     */
+    long allocatedBytes() {
+        return allocations == null ? 0 : allocations.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Charges bytes allocated by a render pool thread to the current frame. Called by the pool threads.
+     *
+     * @param bytes bytes allocated by a task
+     */
+    synchronized void workerAllocated(long bytes) {
+        frameWorkerBytes += bytes;
+    }
+
+    /**
+     * Marks the end of a frame started with {@link #frameStarted()}. Called by the rendering thread.
+     */
+    synchronized void frameFinished() {
+        long nanos = System.nanoTime() - frameStart;
+
+        if (allocations != null)
+            totalBytes += allocatedBytes() - frameStartBytes + frameWorkerBytes;
+
+        frameWorkerBytes = 0;
+
+        frameStarts[(int) (frames % RATE_WINDOW)] = frameStart;
+        frames++;
+        totalFrameNanos += nanos;
+        maxFrameNanos = Math.max(maxFrameNanos, nanos);
+
+        // Bucket by the position of the highest set bit of the frame time in microseconds
+        int bucket = 63 - Long.numberOfLeadingZeros((nanos / 1000) | 1);
+        histogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+    }
+
+    /**
+     * Records the time taken to draw a telemetry module. Called by the rendering thread.
+     *
+     * @param identifier module identifier
+     * @param nanos      draw time in nanoseconds
+     */
+    synchronized void moduleDrawn(String identifier, long nanos) {
+        // Looked up without a lambda so that measuring a frame does not allocate once every module has been seen
+        double[] micros = moduleMicros.get(identifier);
+
+        if (micros == null)
+            moduleMicros.put(identifier, new double[]{nanos / 1000.0});
+        else
+            micros[0] += (nanos / 1000.0 - micros[0]) * SMOOTHING;
+    }
+
+    /**
+     * Records the time taken to copy a frame to the screen.
+     *
+     * @param nanos blit time in nanoseconds
+     */
+    public synchronized void blitFinished(long nanos) {
+        blitMicros += (nanos / 1000.0 - blitMicros) * SMOOTHING;
+    }
+
+    /**
+     * Gets the number of frames rendered since the last reset.
+     *
+     * @return frame count
+     */
+    @Override
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of frames the scheduler skipped.
+     *
+     * @return dropped frame count, or 0 if no scheduler is attached
+     */
+    @Override
+    public long getDroppedFrames() {
+        FrameScheduler s = scheduler;
+        return s == null ? 0 : s.droppedFrames();
+    }
+
+    /**
+     * Gets the frame rate the scheduler is targeting.
+     *
+     * @return target frame rate (Hz), or 0 if no scheduler is attached
+     */
+    @Override
+    public int getTargetFps() {
+        FrameScheduler s = scheduler;
+        return s == null ? 0 : s.refreshRate();
+    }
+
+    /**
+     * Gets the frame rate actually achieved over the most recent frames.
+     *
+     * @return achieved frame rate (Hz)
+     */
+    @Override
+    public synchronized double getAchievedFps() {
+        int samples = (int) Math.min(frames, RATE_WINDOW);
+
+        if (samples < 2)
+            return 0;
+
+        // Rate over the frames still held in the window, oldest to newest
+        long newest = frameStarts[(int) ((frames - 1) % RATE_WINDOW)];
+        long oldest = frameStarts[(int) ((frames - samples) % RATE_WINDOW)];
+        return newest == oldest ? 0 : (samples - 1) * 1e9 / (newest - oldest);
+    }
+
+    /**
+     * Gets the mean time taken to render a frame.
+     *
+     * @return mean frame time in microseconds
+     */
+    @Override
+    public synchronized double getMeanFrameMicros() {
+        return frames == 0 ? 0 : totalFrameNanos / 1000.0 / frames;
+    }
+
+    /**
+     * Gets the longest time taken to render a frame.
+     *
+     * @return maximum frame time in microseconds
+     */
+    @Override
+    public synchronized long getMaxFrameMicros() {
+        return maxFrameNanos / 1000;
+    }
+
+    /**
+     * Gets an upper bound on the frame time below which a fraction of frames were rendered.
+     *
+     * @param percentile fraction of frames, from 0 to 1
+     * @return frame time in microseconds
+     */
+    @Override
+    public synchronized long getFrameMicrosPercentile(double percentile) {
+        long target = (long) Math.ceil(Math.max(0, Math.min(1, percentile)) * frames);
+        long counted = 0;
+
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            counted += histogram[i];
+
+            if (counted >= target)
+                return Math.min(2L << i, maxFrameNanos / 1000);
+        }
+
+        return maxFrameNanos / 1000;
+    }
+
+    /**
+     * Gets the frame time histogram. Bucket 0 counts frames under 2 microseconds and bucket i counts frames from
+     * 2<sup>i</sup> to 2<sup>i+1</sup> microseconds; the last bucket also counts every slower frame.
+     *
+     * @return frame counts per bucket
+     */
+    @Override
+    public synchronized long[] getFrameTimeHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Gets the mean number of bytes allocated per frame by the rendering thread and, when rendering in parallel, the
+     * render pool.
+     *
+     * @return bytes per frame, or -1 if allocation measurement is unsupported
+     */
+    @Override
+    public synchronized double getMeanBytesPerFrame() {
+        if (allocations == null)
+            return -1;
+
+        return frames == 0 ? 0 : (double) totalBytes / frames;
+    }
+
+    /**
+     * Gets the recent time taken to copy a frame to the screen.
+     *
+     * @return blit time in microseconds
+     */
+    @Override
+    public synchronized double getBlitMicros() {
+        return blitMicros;
+    }
+
+    /**
+     * Gets the recent time taken to draw each telemetry module, by identifier.
+     *
+     * @return draw time in microseconds per module
+     */
+    @Override
+    public synchronized Map<String, Double> getModuleMicros() {
+        HashMap<String, Double> micros = new HashMap<>();
+
+        for (Map.Entry<String, double[]> e : moduleMicros.entrySet())
+            micros.put(e.getKey(), e.getValue()[0]);
+
+        return micros;
+    }
+
+    /**
+     * Clears every metric.
+     */
+    @Override
+    public synchronized void reset() {
+        frames = totalFrameNanos = maxFrameNanos = totalBytes = frameWorkerBytes = 0;
+        blitMicros = 0;
+        Arrays.fill(histogram, 0);
+        moduleMicros.clear();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as {@code onyx:type=RenderMetrics,name=<name>}.
+     *
+     * @param name name distinguishing this display's metrics from others
+     * @throws JMException if the name is invalid or already registered
+     */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        ObjectName on = ObjectName.getInstance("onyx:type=RenderMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+        objectName = on;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     *
+     * @throws JMException if the metrics could not be unregistered
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null)
+            return;
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+}
@@ -0,0 +1,92 @@
+package onyx.graphics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RenderMetrics}, exposed through JMX.
+ */
+public interface RenderMetricsMXBean {
+    /**
+     * Gets the number of frames rendered since the last reset.
+     *
+     * @return frame count
+     */
+    long getFrames();
+
+    /**
+     * Gets the number of frames the scheduler skipped.
+     *
+     * @return dropped frame count, or 0 if no scheduler is attached
+     */
+    long getDroppedFrames();
+
+    /**
+     * Gets the frame rate the scheduler is targeting.
+     *
+     * @return target frame rate (Hz), or 0 if no scheduler is attached
+     */
+    int getTargetFps();
+
+    /**
+     * Gets the frame rate actually achieved over the most recent frames.
+     *
+     * @return achieved frame rate (Hz)
+     */
+    double getAchievedFps();
+
+    /**
+     * Gets the mean time taken to render a frame.
+     *
+     * @return mean frame time in microseconds
+     */
+    double getMeanFrameMicros();
+
+    /**
+     * Gets the longest time taken to render a frame.
+     *
+     * @return maximum frame time in microseconds
+     */
+    long getMaxFrameMicros();
+
+    /**
+     * Gets an upper bound on the frame time below which a fraction of frames were rendered.
+     *
+     * @param percentile fraction of frames, from 0 to 1
+     * @return frame time in microseconds
+     */
+    long getFrameMicrosPercentile(double percentile);
+
+    /**
+     * Gets the frame time histogram. Bucket 0 counts frames under 2 microseconds and bucket i counts frames from
+     * 2<sup>i</sup> to 2<sup>i+1</sup> microseconds; the last bucket also counts every slower frame.
+     *
+     * @return frame counts per bucket
+     */
+    long[] getFrameTimeHistogram();
+
+    /**
+     * Gets the mean number of bytes allocated per frame by the rendering thread and render pool.
+     *
+     * @return bytes per frame, or -1 if allocation measurement is unsupported
+     */
+    double getMeanBytesPerFrame();
+
+    /**
+     * Gets the recent time taken to copy a frame to the screen.
+     *
+     * @return blit time in microseconds
+     */
+    double getBlitMicros();
+
+    /**
+     * Gets the recent time taken to draw each telemetry module, by identifier.
+     *
+     * @return draw time in microseconds per module
+     */
+    Map<String, Double> getModuleMicros();
+
+    /**
+     * Clears every metric.
+     */
+    void reset();
+}
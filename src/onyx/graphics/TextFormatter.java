@@ -0,0 +1,109 @@
+package onyx.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+
+/**
+ * Compiles coded text into {@link FormattedText} runs. A formatter holds one shared {@link Font} and
+ * {@link FontMetrics} per weight, so no fonts are allocated while drawing.
+ * <p>
+ * Color and weight codes are resolved with a {@link CodeTable}, which may be replaced at any time; each line is compiled
+ * with a single table.
+ */
+public class TextFormatter {
+    // Indexed by font style; BOLD | ITALIC is included so any style constant is a valid index
+    private final Font[] fonts = new Font[4];
+    private final FontMetrics[] metrics = new FontMetrics[4];
+    private volatile CodeTable codes;
+
+    /**
+     * Creates a formatter for a font family and size that uses the default codes.
+     *
+     * @param font plain base font
+     */
+    public TextFormatter(Font font) {
+        this(font, CodeTable.defaults());
+    }
+
+    /**
+     * Creates a formatter for a font family and size.
+     *
+     * @param font  plain base font
+     * @param codes color and weight codes
+     */
+    public TextFormatter(Font font, CodeTable codes) {
+        this.codes = codes;
+
+        // Metrics are taken from an image surface, which matches the default rendering hints of a Display
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+        for (int style = 0; style < fonts.length; style++) {
+            fonts[style] = font.deriveFont(style);
+            metrics[style] = g.getFontMetrics(fonts[style]);
+        }
+
+        g.dispose();
+    }
+
+    /**
+     * Replaces the table that codes are resolved with. Lines compiled with the previous table are unaffected.
+     *
+     * @param codes color and weight codes
+     */
+    public void setCodes(CodeTable codes) {
+        this.codes = codes;
+    }
+
+    /**
+     * Gets the table that codes are resolved with.
+     *
+     * @return color and weight codes
+     */
+    public CodeTable codes() {
+        return codes;
+    }
+
+    /**
+     * Gets the shared font instance for a weight.
+     *
+     * @param weight font style constant
+     * @return font
+     */
+    public Font font(int weight) {
+        return fonts[weight];
+    }
+
+    /**
+     * Gets the metrics of the font for a weight.
+     *
+     * @param weight font style constant
+     * @return font metrics
+     */
+    public FontMetrics fontMetrics(int weight) {
+        return metrics[weight];
+    }
+
+    /**
+     * Compiles a line of coded text. Lines begin in the default text color and plain weight.
+     *
+     * @param str coded text
+     * @return compiled line, or null if str is null
+     */
+    public FormattedText compile(String str) {
+        if (str == null)
+            return null;
+
+        ArrayList<FormattedText.Run> runs = new ArrayList<>();
+        int[] offset = new int[1];
+
+        codes.parse(str, (text, start, end, color, weight) -> {
+            String run = str.substring(start, end);
+            int width = metrics[weight].stringWidth(run);
+            runs.add(new FormattedText.Run(run, color, weight, offset[0], width));
+            offset[0] += width;
+        });
+
+        return new FormattedText(str, runs.toArray(new FormattedText.Run[0]), offset[0]);
+    }
+}
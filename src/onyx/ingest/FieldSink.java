@@ -0,0 +1,16 @@
+package onyx.ingest;
+
+/**
+ * Receives the decoded values of a {@link PacketSchema} field. Sinks are called on the thread that decodes packets, once
+ * per packet, and should not block.
+ */
+@FunctionalInterface
+public interface FieldSink {
+    /**
+     * Accepts a decoded field value.
+     *
+     * @param value field value, scaled to engineering units
+     * @param time  packet arrival time, in seconds since the receiver was created
+     */
+    void accept(double value, double time);
+}
@@ -0,0 +1,125 @@
+package onyx.ingest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary encodings a {@link PacketSchema} field may have. Multi-byte fields are read in the schema's byte order.
+ */
+public enum FieldType {
+    /**
+     * Signed 8-bit integer.
+     */
+    INT8(1, true),
+    /**
+     * Unsigned 8-bit integer.
+     */
+    UINT8(1, true),
+    /**
+     * Signed 16-bit integer.
+     */
+    INT16(2, true),
+    /**
+     * Unsigned 16-bit integer.
+     */
+    UINT16(2, true),
+    /**
+     * Signed 32-bit integer.
+     */
+    INT32(4, true),
+    /**
+     * Unsigned 32-bit integer.
+     */
+    UINT32(4, true),
+    /**
+     * Signed 64-bit integer.
+     */
+    INT64(8, true),
+    /**
+     * IEEE 754 single precision float.
+     */
+    FLOAT32(4, false),
+    /**
+     * IEEE 754 double precision float.
+     */
+    FLOAT64(8, false);
+
+    private final int size;
+    private final boolean integral;
+
+    /**
+     * Creates a field type.
+     *
+     * @param size     encoded size in bytes
+     * @param integral whether or not the type encodes whole numbers
+     */
+    FieldType(int size, boolean integral) {
+        this.size = size;
+        this.integral = integral;
+    }
+
+    /**
+     * Gets the encoded size of the type.
+     *
+     * @return size in bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets whether or not the type encodes whole numbers.
+     *
+     * @return if values are integers
+     */
+    public boolean integral() {
+        return integral;
+    }
+
+    /**
+     * Reads a whole-number field. Floating point fields are truncated.
+     *
+     * @param buffer buffer in the schema's byte order
+     * @param index  absolute index of the field's first byte
+     * @return field value
+     */
+    long readLong(ByteBuffer buffer, int index) {
+        switch (this) {
+            case INT8:
+                return buffer.get(index);
+            case UINT8:
+                return buffer.get(index) & 0xFFL;
+            case INT16:
+                return buffer.getShort(index);
+            case UINT16:
+                return buffer.getShort(index) & 0xFFFFL;
+            case INT32:
+                return buffer.getInt(index);
+            case UINT32:
+                return buffer.getInt(index) & 0xFFFFFFFFL;
+            case INT64:
+                return buffer.getLong(index);
+            case FLOAT32:
+                return (long) buffer.getFloat(index);
+            default:
+                return (long) buffer.getDouble(index);
+        }
+    }
+
+    /**
+     * Reads a field as a floating point number.
+     *
+     * @param buffer buffer in the schema's byte order
+     * @param index  absolute index of the field's first byte
+     * @return field value
+     */
+    double readDouble(ByteBuffer buffer, int index) {
+        switch (this) {
+            case FLOAT32:
+                return buffer.getFloat(index);
+            case FLOAT64:
+                return buffer.getDouble(index);
+            default:
+                return readLong(buffer, index);
+        }
+    }
+}
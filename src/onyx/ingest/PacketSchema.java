@@ -0,0 +1,335 @@
+package onyx.ingest;
+
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.ValueMapTelemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The layout of one kind of fixed-length binary packet: named fields at fixed byte offsets, each with an encoding and a
+ * linear conversion to engineering units, and optionally an identifier field that tells this kind of packet apart from
+ * others on the same feed.
+ * <p>
+ * Fields are bound to the telemetry they update. Value map bindings register a handle once and set it by handle, graph
+ * bindings hold a series handle, and every field is read straight out of the packet buffer, so decoding a packet
+ * allocates nothing. Fields should be declared before packets are decoded; bindings may be added at any time.
+ */
+public class PacketSchema {
+    private final String name;
+    private final int length;
+    private final ByteOrder order;
+    private final HashMap<String, Integer> fieldMap = new HashMap<>();
+    private FieldType[] types = new FieldType[0];
+    private int[] offsets = new int[0];
+    private double[] scales = new double[0], biases = new double[0];
+    private int idOffset = -1;
+    private FieldType idType;
+    private long idValue;
+    // Copied on write so bindings can be added while packets are decoded
+    private volatile Route[] routes = new Route[0];
+
+    /**
+     * A binding of a field to the telemetry it updates.
+     */
+    private static class Route {
+        final int field, xField;
+        final ValueMapTelemetry map;
+        final int handle;
+        final boolean whole;
+        final GraphTelemetry.Series series;
+        final FieldSink sink;
+
+        /**
+         * Creates a binding. Exactly one of the map, series or sink is set.
+         *
+         * @param field  index of the bound field
+         * @param xField index of the field plotted horizontally, or -1 to plot against arrival time
+         * @param map    value map to set, or null
+         * @param handle value map handle
+         * @param whole  whether or not values are set as whole numbers
+         * @param series graph series to plot into, or null
+         * @param sink   custom sink, or null
+         */
+        Route(int field, int xField, ValueMapTelemetry map, int handle, boolean whole, GraphTelemetry.Series series,
+              FieldSink sink) {
+            this.field = field;
+            this.xField = xField;
+            this.map = map;
+            this.handle = handle;
+            this.whole = whole;
+            this.series = series;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Creates a schema with no fields.
+     *
+     * @param name   packet name
+     * @param length packet length in bytes
+     * @param order  byte order of multi-byte fields
+     */
+    public PacketSchema(String name, int length, ByteOrder order) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Packet length must be positive: " + length);
+
+        this.name = name;
+        this.length = length;
+        this.order = order;
+    }
+
+    /**
+     * Declares the field that identifies this kind of packet. Packets whose identifier holds any other value are not
+     * decoded with this schema.
+     *
+     * @param offset byte offset of the identifier
+     * @param type   identifier encoding; must be integral
+     * @param value  identifier value of this kind of packet
+     */
+    public synchronized void setIdentifier(int offset, FieldType type, long value) {
+        if (!type.integral())
+            throw new IllegalArgumentException("Identifiers must be integers, not " + type);
+
+        checkBounds(offset, type);
+        idOffset = offset;
+        idType = type;
+        idValue = value;
+    }
+
+    /**
+     * Declares a field whose raw value is in engineering units.
+     *
+     * @param name   field name
+     * @param offset byte offset of the field
+     * @param type   field encoding
+     * @return field index
+     */
+    public int addField(String name, int offset, FieldType type) {
+        return addField(name, offset, type, 1, 0);
+    }
+
+    /**
+     * Declares a field that is converted to engineering units as {@code raw * scale + bias}.
+     *
+     * @param name   field name
+     * @param offset byte offset of the field
+     * @param type   field encoding
+     * @param scale  multiplier applied to the raw value
+     * @param bias   offset added after scaling
+     * @return field index
+     */
+    public synchronized int addField(String name, int offset, FieldType type, double scale, double bias) {
+        if (fieldMap.containsKey(name))
+            throw new IllegalArgumentException("Duplicate field " + name);
+
+        checkBounds(offset, type);
+        int index = types.length;
+        types = Arrays.copyOf(types, index + 1);
+        offsets = Arrays.copyOf(offsets, index + 1);
+        scales = Arrays.copyOf(scales, index + 1);
+        biases = Arrays.copyOf(biases, index + 1);
+
+        types[index] = type;
+        offsets[index] = offset;
+        scales[index] = scale;
+        biases[index] = bias;
+        fieldMap.put(name, index);
+        return index;
+    }
+
+    /**
+     * Binds a field to a value map, labelled with the field name.
+     *
+     * @param field field name
+     * @param map   value map to update
+     */
+    public void bind(String field, ValueMapTelemetry map) {
+        bind(field, map, field);
+    }
+
+    /**
+     * Binds a field to a value map. Integer fields with no conversion are shown as whole numbers.
+     *
+     * @param field field name
+     * @param map   value map to update
+     * @param label value map label
+     */
+    public void bind(String field, ValueMapTelemetry map, String label) {
+        int index = field(field);
+        boolean whole = types[index].integral() && scales[index] == 1 && biases[index] == 0;
+        addRoute(new Route(index, -1, map, map.register(label), whole, null, null));
+    }
+
+    /**
+     * Binds a pair of fields to a graph series, plotting one point per packet.
+     *
+     * @param xField name of the field plotted horizontally, or null to plot against arrival time
+     * @param yField name of the field plotted vertically
+     * @param series graph series to plot into
+     */
+    public void bind(String xField, String yField, GraphTelemetry.Series series) {
+        addRoute(new Route(field(yField), xField == null ? -1 : field(xField), null, 0, false, series, null));
+    }
+
+    /**
+     * Binds a field to a custom sink.
+     *
+     * @param field field name
+     * @param sink  receiver of each decoded value
+     */
+    public void bind(String field, FieldSink sink) {
+        addRoute(new Route(field(field), -1, null, 0, false, null, sink));
+    }
+
+    /**
+     * Gets whether or not a packet is of this kind: the buffer holds a full packet and its identifier, if any, matches.
+     *
+     * @param packet buffer holding the packet
+     * @param base   absolute index of the packet's first byte
+     * @return if the packet can be decoded with this schema
+     */
+    public boolean matches(ByteBuffer packet, int base) {
+        return packet.limit() - base >= length && identifies(packet, base);
+    }
+
+    /**
+     * Decodes a packet and updates every bound telemetry module. A buffer in another byte order is read through a
+     * view in this schema's order, so the caller's buffer is never changed; buffers already in this order are read
+     * directly, without allocating.
+     *
+     * @param packet buffer holding the packet
+     * @param base   absolute index of the packet's first byte
+     * @param time   packet arrival time, in seconds
+     */
+    public void dispatch(ByteBuffer packet, int base, double time) {
+        packet = inOrder(packet);
+
+        for (Route route : routes) {
+            if (route.map != null) {
+                if (route.whole)
+                    route.map.set(route.handle, types[route.field].readLong(packet, base + offsets[route.field]));
+                else
+                    route.map.set(route.handle, value(packet, base, route.field));
+            } else if (route.series != null) {
+                double x = route.xField < 0 ? time : value(packet, base, route.xField);
+                route.series.addPoint(x, value(packet, base, route.field));
+            } else {
+                route.sink.accept(value(packet, base, route.field), time);
+            }
+        }
+    }
+
+    /**
+     * Reads a field of a packet in engineering units.
+     *
+     * @param packet buffer holding the packet, in this schema's byte order
+     * @param base   absolute index of the packet's first byte
+     * @param field  field index
+     * @return field value
+     */
+    public double value(ByteBuffer packet, int base, int field) {
+        return types[field].readDouble(packet, base + offsets[field]) * scales[field] + biases[field];
+    }
+
+    /**
+     * Gets the index of a field.
+     *
+     * @param name field name
+     * @return field index
+     */
+    public synchronized int field(String name) {
+        Integer index = fieldMap.get(name);
+
+        if (index == null)
+            throw new IllegalArgumentException("No field " + name + " in packet " + this.name);
+
+        return index;
+    }
+
+    /**
+     * Gets the packet name.
+     *
+     * @return name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Gets the packet length.
+     *
+     * @return length in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the byte order of multi-byte fields.
+     *
+     * @return byte order
+     */
+    public ByteOrder order() {
+        return order;
+    }
+
+    /**
+     * Gets the end of the identifier field, the number of bytes needed to tell whether a packet is of this kind.
+     *
+     * @return identifier end offset, or 0 if the schema has no identifier
+     */
+    int identifierEnd() {
+        return idOffset < 0 ? 0 : idOffset + idType.size();
+    }
+
+    /**
+     * Gets whether or not a packet's identifier matches this schema. The buffer must hold at least
+     * {@link #identifierEnd()} bytes of the packet. Like {@link #dispatch(ByteBuffer, int, double)}, this never changes
+     * the buffer's byte order.
+     *
+     * @param packet buffer holding the packet
+     * @param base   absolute index of the packet's first byte
+     * @return if the identifier matches, or true if the schema has no identifier
+     */
+    boolean identifies(ByteBuffer packet, int base) {
+        if (idOffset < 0)
+            return true;
+
+        return idType.readLong(inOrder(packet), base + idOffset) == idValue;
+    }
+
+    /**
+     * Gets a buffer that reads multi-byte fields in this schema's byte order.
+     *
+     * @param packet buffer holding the packet
+     * @return the buffer itself if it is in this order, or a view of it that is
+     */
+    private ByteBuffer inOrder(ByteBuffer packet) {
+        return packet.order() == order ? packet : packet.duplicate().order(order);
+    }
+
+    /**
+     * Adds a binding.
+     *
+     * @param route binding to add
+     */
+    private synchronized void addRoute(Route route) {
+        Route[] next = Arrays.copyOf(routes, routes.length + 1);
+        next[routes.length] = route;
+        routes = next;
+    }
+
+    /**
+     * Checks that a field lies within the packet.
+     *
+     * @param offset byte offset of the field
+     * @param type   field encoding
+     */
+    private void checkBounds(int offset, FieldType type) {
+        if (offset < 0 || offset + type.size() > length)
+            throw new IllegalArgumentException("Field at " + offset + " does not fit in a " + length + " byte packet");
+    }
+}
@@ -0,0 +1,350 @@
+package onyx.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads binary telemetry packets from a channel on a dedicated thread and decodes each one with the first
+ * {@link PacketSchema} that matches it, updating the telemetry its fields are bound to.
+ * <p>
+ * Datagram channels carry one or more whole packets per datagram; bytes left over that no schema matches are dropped
+ * with the rest of their datagram. Stream channels, such as a {@link java.nio.channels.SocketChannel}, carry packets
+ * back to back, possibly split across reads; after bytes no schema matches, the receiver skips ahead a byte at a time
+ * until packets line up again. Dropped and skipped bytes are counted in {@link #droppedBytes()}.
+ * <p>
+ * Packets are read into a single direct buffer and decoded in place, so a running receiver allocates nothing per packet.
+ * Each schema reads the buffer through a view in its own byte order, made once when the receiver is created.
+ */
+public class TelemetryReceiver implements AutoCloseable {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final PacketSchema[] schemas;
+    private final ReadableByteChannel stream;
+    private final DatagramChannel datagrams;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer bufferBigEndian = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    private final ByteBuffer bufferLittleEndian = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    // Views of the bytes being decoded, in each byte order
+    private ByteBuffer bigEndian, littleEndian;
+    private final long startNanos = System.nanoTime();
+    private final int minimumLength;
+    private Thread thread;
+    private volatile boolean running;
+    // Only written by the receiving thread
+    private volatile long packets, droppedBytes;
+    private volatile IOException failure;
+
+    /**
+     * Creates a stopped receiver for a datagram feed. The channel is read in blocking mode; if it is connected, only
+     * datagrams from the connected address are received.
+     *
+     * @param channel bound datagram channel
+     * @param schemas packet layouts, tried in order
+     */
+    public TelemetryReceiver(DatagramChannel channel, PacketSchema... schemas) {
+        this(null, channel, schemas);
+    }
+
+    /**
+     * Creates a stopped receiver for a stream feed.
+     *
+     * @param channel blocking stream channel
+     * @param schemas packet layouts, tried in order
+     */
+    public TelemetryReceiver(ReadableByteChannel channel, PacketSchema... schemas) {
+        this(channel, null, schemas);
+    }
+
+    /**
+     * Creates a stopped receiver.
+     *
+     * @param stream    stream channel, or null
+     * @param datagrams datagram channel, or null
+     * @param schemas   packet layouts, tried in order
+     */
+    private TelemetryReceiver(ReadableByteChannel stream, DatagramChannel datagrams, PacketSchema[] schemas) {
+        if (schemas.length == 0)
+            throw new IllegalArgumentException("At least one packet schema is required");
+
+        int shortest = Integer.MAX_VALUE;
+
+        for (PacketSchema schema : schemas) {
+            if (schema.length() > BUFFER_SIZE)
+                throw new IllegalArgumentException("Packet " + schema.name() + " is longer than " + BUFFER_SIZE);
+
+            shortest = Math.min(shortest, schema.length());
+        }
+
+        this.stream = stream;
+        this.datagrams = datagrams;
+        this.schemas = schemas.clone();
+        minimumLength = shortest;
+    }
+
+    /**
+     * Starts receiving packets on a daemon thread. Does nothing if the receiver is already running.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        thread = new Thread(this::run, "Onyx telemetry receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops receiving, closing the channel, and waits for the receiving thread to exit.
+     *
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+
+        // Closing the channel wakes a blocked read
+        if (datagrams != null)
+            datagrams.close();
+        else
+            stream.close();
+
+        if (thread != null && Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        thread = null;
+    }
+
+    /**
+     * Gets whether or not the receiver is running.
+     *
+     * @return if packets are being received
+     */
+    public boolean running() {
+        return running;
+    }
+
+    /**
+     * Gets the number of packets decoded.
+     *
+     * @return packet count
+     */
+    public long packets() {
+        return packets;
+    }
+
+    /**
+     * Gets the number of bytes that matched no schema and were dropped.
+     *
+     * @return dropped byte count
+     */
+    public long droppedBytes() {
+        return droppedBytes;
+    }
+
+    /**
+     * Gets the error that stopped the receiver, if any. Closing the receiver is not an error.
+     *
+     * @return read error, or null
+     */
+    public IOException failure() {
+        return failure;
+    }
+
+    /**
+     * Decodes every whole packet in a buffer, from its position to its limit, as if it had been received as one
+     * datagram. Useful for packets read by other means; must not be called while the receiver is running.
+     *
+     * @param data buffer of back-to-back packets
+     * @return number of packets decoded
+     */
+    public int decode(ByteBuffer data) {
+        long before = packets;
+        decodeDatagram(data, elapsed());
+        return (int) (packets - before);
+    }
+
+    /**
+     * Receiving loop.
+     */
+    private void run() {
+        try {
+            while (running) {
+                if (datagrams != null)
+                    receiveDatagram();
+                else
+                    receiveStream();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by close(), or asynchronously while blocked in a read
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Receives and decodes one datagram.
+     *
+     * @throws IOException if the channel fails
+     */
+    private void receiveDatagram() throws IOException {
+        buffer.clear();
+
+        // A connected channel can be read without producing a sender address
+        if (datagrams.isConnected())
+            datagrams.read(buffer);
+        else
+            datagrams.receive(buffer);
+
+        buffer.flip();
+        decodeDatagram(buffer, elapsed());
+    }
+
+    /**
+     * Decodes the packets of one datagram.
+     *
+     * @param datagram buffer from its position to its limit
+     * @param time     arrival time in seconds
+     */
+    private void decodeDatagram(ByteBuffer datagram, double time) {
+        int base = datagram.position();
+        view(datagram);
+
+        while (base < datagram.limit()) {
+            PacketSchema schema = match(base);
+
+            // Datagrams are not realigned; whatever follows an unknown packet is lost with it
+            if (schema == null) {
+                droppedBytes += datagram.limit() - base;
+                break;
+            }
+
+            schema.dispatch(ordered(schema), base, time);
+            packets++;
+            base += schema.length();
+        }
+
+        datagram.position(datagram.limit());
+    }
+
+    /**
+     * Reads from the stream and decodes every whole packet received so far. A trailing partial packet is kept for the
+     * next read.
+     *
+     * @throws IOException if the channel fails
+     */
+    private void receiveStream() throws IOException {
+        if (stream.read(buffer) < 0) {
+            running = false;
+            return;
+        }
+
+        buffer.flip();
+        view(buffer);
+        double time = elapsed();
+        int base = 0;
+
+        while (buffer.limit() - base >= minimumLength) {
+            PacketSchema schema = match(base);
+
+            if (schema != null) {
+                schema.dispatch(ordered(schema), base, time);
+                packets++;
+                base += schema.length();
+            } else if (undecided(base)) {
+                break;
+            } else {
+                // Out of step with the stream; look for the next packet a byte later
+                droppedBytes++;
+                base++;
+            }
+        }
+
+        buffer.position(base);
+        buffer.compact();
+    }
+
+    /**
+     * Points the byte order views at the bytes about to be decoded. The receive buffer's views are reused; other
+     * buffers get views of their own, so their byte order is left as it was.
+     *
+     * @param packets buffer of packets, up to its limit
+     */
+    private void view(ByteBuffer packets) {
+        if (packets == buffer) {
+            bigEndian = bufferBigEndian;
+            littleEndian = bufferLittleEndian;
+        } else {
+            bigEndian = packets.duplicate().order(ByteOrder.BIG_ENDIAN);
+            littleEndian = packets.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        bigEndian.limit(packets.limit());
+        littleEndian.limit(packets.limit());
+    }
+
+    /**
+     * Gets the view of the bytes being decoded in a schema's byte order.
+     *
+     * @param schema packet layout
+     * @return view in the schema's byte order
+     */
+    private ByteBuffer ordered(PacketSchema schema) {
+        return schema.order() == ByteOrder.LITTLE_ENDIAN ? littleEndian : bigEndian;
+    }
+
+    /**
+     * Finds the first schema a whole packet matches.
+     *
+     * @param base absolute index of the packet's first byte
+     * @return matching schema, or null
+     */
+    private PacketSchema match(int base) {
+        for (PacketSchema schema : schemas)
+            if (schema.matches(ordered(schema), base))
+                return schema;
+
+        return null;
+    }
+
+    /**
+     * Checks whether a partial packet at the end of the stream buffer could still match a schema once more bytes
+     * arrive.
+     *
+     * @param base absolute index of the packet's first byte
+     * @return if more bytes are needed to decide
+     */
+    private boolean undecided(int base) {
+        int available = buffer.limit() - base;
+
+        for (PacketSchema schema : schemas) {
+            if (available >= schema.length())
+                continue;
+
+            if (available < schema.identifierEnd() || schema.identifies(ordered(schema), base))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the time since the receiver was created.
+     *
+     * @return elapsed time in seconds
+     */
+    private double elapsed() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
@@ -1,18 +1,48 @@
 package onyx.telemetry;
 
+import onyx.graphics.FormattedText;
+import onyx.graphics.TextFormatter;
 import onyx.telemetry.timestamp.Timestamper;
 
 import java.awt.FontMetrics;
+import java.util.Arrays;
 
 /**
  * A variation of the paragraph-style telemetry that displays a log of timestamped data.
+ * <p>
+ * Entries are kept in a ring buffer, so logging costs the same however full the console is; once the ring is full,
+ * each entry overwrites the oldest one. Entries are stored raw, as a message and a time; the newest entries that fit
+ * in the visible window are timestamped and put in order only when a frame asks for {@link #data()}, and coded entries
+ * are compiled only when they are drawn. Entries that scroll away between frames are never formatted at all.
+ * <p>
+ * Entries may be logged from any thread, one at a time or in batches with {@link #logAll(String[], double[])}.
+ * Appends hold a short lock that only guards the ring. Reading the window takes the same lock just long enough to copy
+ * the visible entries; timestamps are formatted outside it, so logging threads never wait on formatting.
  */
 public class ConsoleTelemetry extends ParagraphTelemetry {
-    private Timestamper timestamper;
-    private int consolePosition = 0;
+    private final Object lock = new Object();
+    private final String[] messages, stamped;
+    private final double[] stampTimes;
+    // Visible width of each stamped entry, or -1 until it is measured
+    private final int[] stampWidths;
+    // Guarded by itself rather than the lock; only readers of the window use it
+    private final StringBuilder stampBuffer = new StringBuilder();
+    // Raw entries of the window being read, and their times, or NaN for entries already stamped
+    private final String[] viewMessages;
+    private final double[] viewTimes;
+    private final int visibleLines;
+    private volatile Timestamper timestamper;
+    private volatile FormattedText[] compiled;
+    // Number of entries ever logged; the next entry goes in slot count % capacity
+    private long count;
+    // Incremented by every change to the ring, so a window is rebuilt only when something changed since it was read
+    private long version;
+    private String[] view;
+    private long viewVersion = -1;
+    private volatile long viewStart;
 
     /**
-     * Creates a new module with an empty console.
+     * Creates a new module with an empty console that shows every line it holds.
      *
      * @param x           horizontal position from interface left
      * @param y           vertical position from interface top
@@ -22,54 +52,376 @@ public class ConsoleTelemetry extends ParagraphTelemetry {
      * @param capacity    number of lines in the console
      */
     public ConsoleTelemetry(int x, int y, boolean coded, FontMetrics fontMetrics, String title, int capacity) {
+        this(x, y, coded, fontMetrics, title, capacity, capacity);
+    }
+
+    /**
+     * Creates a new module with an empty console that shows only its newest lines.
+     *
+     * @param x            horizontal position from interface left
+     * @param y            vertical position from interface top
+     * @param coded        whether or not the data contains Onyx metacharacters
+     * @param fontMetrics  font metrics for text dimension calculations
+     * @param title        title text
+     * @param capacity     number of lines in the console
+     * @param visibleLines number of newest lines drawn, at most the capacity
+     */
+    public ConsoleTelemetry(int x, int y, boolean coded, FontMetrics fontMetrics, String title, int capacity,
+                            int visibleLines) {
         super(x, y, coded, fontMetrics, title);
 
-        data = new String[capacity + 1];
-        data[0] = title;
+        if (capacity <= 0 || visibleLines <= 0 || visibleLines > capacity)
+            throw new IllegalArgumentException("Visible lines must be between 1 and the capacity " + capacity);
+
+        messages = new String[capacity];
+        stamped = new String[capacity];
+        stampTimes = new double[capacity];
+        stampWidths = new int[capacity];
+        Arrays.fill(stampWidths, -1);
+        compiled = new FormattedText[capacity];
+        viewMessages = new String[visibleLines];
+        viewTimes = new double[visibleLines];
+        this.visibleLines = visibleLines;
     }
 
     /**
-     * Identifies a format to be used for timestamping console entries.
+     * Identifies a format to be used for timestamping console entries. Entries are stamped when they are drawn, so
+     * visible entries are restamped with the new format.
      *
      * @param stamper timestamp format
      */
     public void setTimestamper(Timestamper stamper) {
-        timestamper = stamper;
+        synchronized (lock) {
+            timestamper = stamper;
+            Arrays.fill(stamped, null);
+            Arrays.fill(stampWidths, -1);
+            version++;
+        }
+
+        markDirty();
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        synchronized (lock) {
+            Arrays.fill(messages, null);
+            Arrays.fill(stamped, null);
+            Arrays.fill(stampWidths, -1);
+            count = 0;
+            version++;
+        }
+
+        markDirty();
+    }
+
+    /**
+     * Gets the number of entries the console keeps.
+     *
+     * @return capacity in lines
+     */
+    public int capacity() {
+        return messages.length;
     }
 
     /**
-     * Adds a new entry to the console. If the console is full, all current entries will be pushed down one position,
-     * and the entry in the first position will be lost.
+     * Adds a new entry to the console. If the console is full, the oldest entry will be lost.
      *
      * @param line new entry
      */
     public void log(String line) {
-        if (consolePosition == data.length - 1)
-            shuffle();
-
-        data[consolePosition + 1] = line;
-        consolePosition++;
+        log(line, Double.NaN);
     }
 
     /**
      * Adds a new entry with a timestamp.
      *
      * @param line new entry
-     * @param time associated time
+     * @param time associated time, or NaN for no timestamp
      * @see {@link #setTimestamper(Timestamper)}
      */
     public void log(String line, double time) {
-        String stamp = timestamper == null ? "" : timestamper.stamp(time);
-        log(stamp + line);
+        synchronized (lock) {
+            append(line, time);
+        }
+
+        markDirty();
+
+        UpdateListener listener = updateListener;
+        if (listener != null)
+            listener.lineLogged(this, line, time);
+    }
+
+    /**
+     * Adds several new entries without timestamps.
+     *
+     * @param lines new entries, oldest first
+     */
+    public void logAll(String[] lines) {
+        logAll(lines, null, 0, lines.length);
+    }
+
+    /**
+     * Adds several new entries with timestamps.
+     *
+     * @param lines new entries, oldest first
+     * @param times associated times, or NaN for no timestamp
+     */
+    public void logAll(String[] lines, double[] times) {
+        logAll(lines, times, 0, lines.length);
+    }
+
+    /**
+     * Adds a range of new entries with timestamps, taking the lock once for the whole batch.
+     *
+     * @param lines  new entries, oldest first
+     * @param times  associated times, NaN for no timestamp; or null to stamp none of the entries
+     * @param offset index of the first entry to add
+     * @param length number of entries to add
+     */
+    public void logAll(String[] lines, double[] times, int offset, int length) {
+        if (length <= 0)
+            return;
+
+        synchronized (lock) {
+            // Entries that would be overwritten within the batch are only counted
+            int skipped = Math.max(0, length - messages.length);
+            count += skipped;
+
+            for (int i = offset + skipped; i < offset + length; i++)
+                append(lines[i], times == null ? Double.NaN : times[i]);
+        }
+
+        markDirty();
+        UpdateListener listener = updateListener;
+
+        // Entries overwritten within the batch were never shown, so they are not reported either
+        if (listener != null)
+            for (int i = offset + Math.max(0, length - messages.length); i < offset + length; i++)
+                listener.lineLogged(this, lines[i], times == null ? Double.NaN : times[i]);
+    }
+
+    /**
+     * Stores a raw entry in the next ring slot. Must be called while holding the lock.
+     *
+     * @param message entry text
+     * @param time    associated time, or NaN for no timestamp
+     */
+    private void append(String message, double time) {
+        int slot = (int) (count % messages.length);
+        messages[slot] = message;
+        stampTimes[slot] = time;
+        stamped[slot] = null;
+        stampWidths[slot] = -1;
+        count++;
+        version++;
+    }
+
+    /**
+     * Replaces a visible entry.
+     *
+     * @param index   visible line index (0 for the oldest visible entry, just below the title)
+     * @param newLine new entry
+     */
+    @Override
+    public void setLine(int index, String newLine) {
+        synchronized (lock) {
+            long first = Math.max(0, count - visibleLines);
+
+            if (index < 0 || first + index >= count)
+                throw new IndexOutOfBoundsException("No visible entry at " + index);
+
+            int slot = (int) ((first + index) % messages.length);
+            messages[slot] = newLine;
+            stampTimes[slot] = Double.NaN;
+            stamped[slot] = null;
+            stampWidths[slot] = -1;
+            // Rebuild the window even though no entry was added
+            version++;
+        }
+
+        markDirty();
+    }
+
+    /**
+     * Gets the title followed by the visible entries, oldest first. The window is put in order only when the console
+     * has changed since it was last requested, and only entries that have not been shown before are timestamped. The
+     * lock is held only to copy the window; new entries are stamped after it is released, and their stamps are kept
+     * for later frames if the entries have not been overwritten in the meantime.
+     *
+     * @return title and visible entries
+     */
+    @Override
+    public String[] data() {
+        String title = data[0];
+
+        synchronized (stampBuffer) {
+            String[] next;
+            long start, snapshotVersion;
+            Timestamper stamper;
+            boolean unstamped = false;
+
+            synchronized (lock) {
+                if (viewVersion == version && view[0] == title)
+                    return view;
+
+                int shown = (int) Math.min(count, visibleLines);
+                start = count - shown;
+                snapshotVersion = version;
+                stamper = timestamper;
+                next = new String[shown + 1];
+                next[0] = title;
+
+                for (int i = 0; i < shown; i++) {
+                    int slot = (int) ((start + i) % messages.length);
+                    viewTimes[i] = Double.NaN;
+
+                    if (stamped[slot] != null) {
+                        next[i + 1] = stamped[slot];
+                    } else if (stamper == null || Double.isNaN(stampTimes[slot])) {
+                        next[i + 1] = stamped[slot] = messages[slot];
+                    } else {
+                        // Raw entry; stamped below, once the lock is released
+                        next[i + 1] = viewMessages[i] = messages[slot];
+                        viewTimes[i] = stampTimes[slot];
+                        unstamped = true;
+                    }
+                }
+            }
+
+            for (int i = 0; unstamped && i < next.length - 1; i++) {
+                if (Double.isNaN(viewTimes[i]))
+                    continue;
+
+                stampBuffer.setLength(0);
+                next[i + 1] = stamper.stamp(viewTimes[i], stampBuffer).append(viewMessages[i]).toString();
+            }
+
+            synchronized (lock) {
+                if (unstamped)
+                    keepStamps(next, start, stamper);
+
+                view = next;
+                viewVersion = snapshotVersion;
+                viewStart = start;
+            }
+
+            return next;
+        }
     }
 
     /**
-     * Pushes all console entries down one position.
+     * Caches the stamps formatted for a window in their ring slots, skipping entries that were overwritten or replaced,
+     * or stamped with a format that has since changed, while the lock was released. Must be called while holding the
+     * lock.
+     *
+     * @param window  title and visible entries, stamped
+     * @param start   index of the first visible entry among every entry logged
+     * @param stamper timestamp format the window was stamped with
      */
-    private void shuffle() {
-        for (int i = 2; i < data.length; i++)
-            data[i - 1] = data[i];
+    private void keepStamps(String[] window, long start, Timestamper stamper) {
+        for (int i = 0; i < window.length - 1; i++) {
+            long entry = start + i;
+            int slot = (int) (entry % messages.length);
+
+            if (!Double.isNaN(viewTimes[i]) && timestamper == stamper && count - entry <= messages.length
+                    && stamped[slot] == null && messages[slot] == viewMessages[i] && stampTimes[slot] == viewTimes[i])
+                stamped[slot] = window[i + 1];
+
+            viewMessages[i] = null;
+        }
+    }
+
+    /**
+     * Gets the pixel height of the console, which is fixed by its number of visible lines. As for any paragraph, the
+     * title and entries are followed by one blank line.
+     *
+     * @return height in pixels
+     */
+    @Override
+    public int height() {
+        return fontMetrics.getHeight() * (2 + visibleLines);
+    }
+
+    /**
+     * Gets a line of the most recent {@link #data()} snapshot compiled into styled runs. Entries are cached by ring
+     * slot, so a compiled entry is reused for as long as it stays visible.
+     *
+     * @param index line index into the most recent {@link #data()} snapshot
+     * @param line  text of that line in the snapshot
+     * @return compiled line, or null if the line is null or no formatter has been set
+     */
+    @Override
+    public FormattedText formattedLine(int index, String line) {
+        TextFormatter f = formatter;
+
+        if (index == 0 || !coded || f == null || line == null)
+            return super.formattedLine(index, line);
+
+        long start = viewStart;
+        FormattedText[] lines = compiled;
+        int slot = (int) ((start + index - 1) % lines.length);
+
+        // A stale slot holds some other entry's text
+        if (lines[slot] == null || lines[slot].source() != line)
+            lines[slot] = f.compile(line);
+
+        return lines[slot];
+    }
+
+    /**
+     * Measures the visible width of a line. Entries are cached by ring slot along with their compiled runs, so each
+     * entry is measured once however many frames it scrolls through.
+     *
+     * @param index line index into the data snapshot
+     * @param line  line text
+     * @return width in pixels
+     */
+    @Override
+    protected int measureLine(int index, String line) {
+        if (index == 0 || line == null)
+            return super.measureLine(index, line);
+
+        int slot;
+        boolean current;
+
+        synchronized (lock) {
+            slot = (int) ((viewStart + index - 1) % messages.length);
+
+            // The window may have moved on since the snapshot was taken
+            current = stamped[slot] == line;
+
+            if (current && stampWidths[slot] >= 0)
+                return stampWidths[slot];
+        }
+
+        // Measured outside the lock so logging never waits on layout
+        int measured = super.measureLine(index, line);
+
+        if (current) {
+            synchronized (lock) {
+                if (stamped[slot] == line)
+                    stampWidths[slot] = measured;
+            }
+        }
+
+        return measured;
+    }
+
+    /**
+     * Sets the formatter used to compile coded lines, discarding every compiled entry.
+     *
+     * @param formatter text formatter
+     */
+    @Override
+    public void setFormatter(TextFormatter formatter) {
+        compiled = new FormattedText[messages.length];
+
+        synchronized (lock) {
+            Arrays.fill(stampWidths, -1);
+        }
 
-        consolePosition--;
+        super.setFormatter(formatter);
     }
 }
@@ -0,0 +1,143 @@
+package onyx.telemetry;
+
+import onyx.util.SampleBuffer;
+
+import java.awt.*;
+
+/**
+ * Draws runs of graph samples with a bounded number of draw calls per pixel column, so drawing cost scales with plot
+ * width rather than sample count.
+ * <p>
+ * Connected series use M4 decimation: the samples falling in a pixel column are reduced to their first, last, minimum
+ * and maximum rows, drawn as one connecting line into the column and one vertical span. Because the path between
+ * consecutive samples is continuous, this covers exactly the pixels the full polyline would, so spikes are never lost.
+ * Scattered series draw each distinct pixel in a column once.
+ */
+class DecimatingRasterizer {
+    private final GraphTelemetry graph;
+    // One bit per image row, marking rows already drawn in the current column
+    private long[] rows = new long[0];
+
+    /**
+     * Creates a rasterizer that maps samples to pixels with a graph's axes.
+     *
+     * @param graph graph whose pixel mapping is used
+     */
+    DecimatingRasterizer(GraphTelemetry graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Draws a range of samples.
+     *
+     * @param g         data layer surface, with the series color set
+     * @param height    data layer height in pixels
+     * @param samples   sample buffer
+     * @param from      index of the first sample to draw
+     * @param to        index after the last sample to draw
+     * @param connect   whether or not to connect subsequent samples
+     * @param continued whether or not the sample before from was already drawn and should be connected to
+     */
+    void draw(Graphics2D g, int height, SampleBuffer samples, long from, long to, boolean connect,
+              boolean continued) {
+        if (connect)
+            drawConnected(g, samples, from, to, continued);
+        else
+            drawScattered(g, height, samples, from, to);
+    }
+
+    /**
+     * Draws samples as a polyline, reduced to at most two lines per pixel column.
+     */
+    private void drawConnected(Graphics2D g, SampleBuffer samples, long from, long to, boolean continued) {
+        int xLast, yLast;
+        long i = from;
+
+        if (continued) {
+            xLast = graph.xPixel(samples.x(from - 1));
+            yLast = graph.yPixel(samples.y(from - 1));
+        } else {
+            // The first sample has nothing to connect to; draw it as a dot
+            xLast = graph.xPixel(samples.x(from));
+            yLast = graph.yPixel(samples.y(from));
+            g.drawLine(xLast, yLast, xLast, yLast);
+            i++;
+        }
+
+        while (i < to) {
+            int column = graph.xPixel(samples.x(i));
+            int first = graph.yPixel(samples.y(i));
+            int min = first, max = first, last = first;
+
+            // Fold every following sample in the same column into the column's extremes
+            for (i++; i < to; i++) {
+                if (graph.xPixel(samples.x(i)) != column)
+                    break;
+
+                last = graph.yPixel(samples.y(i));
+                if (last < min)
+                    min = last;
+                if (last > max)
+                    max = last;
+            }
+
+            // Drawn from the new point back, matching the rasterization of the undecimated path
+            g.drawLine(column, first, xLast, yLast);
+            if (min != max)
+                g.drawLine(column, min, column, max);
+
+            xLast = column;
+            yLast = last;
+        }
+    }
+
+    /**
+     * Draws samples as points, drawing each distinct pixel in a column once.
+     */
+    private void drawScattered(Graphics2D g, int height, SampleBuffer samples, long from, long to) {
+        if (rows.length * 64 < height)
+            rows = new long[(height + 63) >> 6];
+
+        int column = Integer.MIN_VALUE;
+        int low = Integer.MAX_VALUE, high = Integer.MIN_VALUE;
+
+        for (long i = from; i < to; i++) {
+            int xPos = graph.xPixel(samples.x(i));
+            int yPos = graph.yPixel(samples.y(i));
+
+            // Entering a new column; forget the rows drawn in the last one
+            if (xPos != column) {
+                clearRows(low, high);
+                column = xPos;
+                low = Integer.MAX_VALUE;
+                high = Integer.MIN_VALUE;
+            }
+
+            // Rows outside the image are clipped anyway
+            if (yPos < 0 || yPos >= height)
+                continue;
+
+            long bit = 1L << yPos;
+            if ((rows[yPos >> 6] & bit) != 0)
+                continue;
+
+            rows[yPos >> 6] |= bit;
+            low = Math.min(low, yPos);
+            high = Math.max(high, yPos);
+            g.drawLine(xPos, yPos, xPos, yPos);
+        }
+
+        clearRows(low, high);
+    }
+
+    /**
+     * Clears the words of the row set covering a range of rows.
+     *
+     * @param low  lowest set row, or {@link Integer#MAX_VALUE} if none were set
+     * @param high highest set row
+     */
+    private void clearRows(int low, int high) {
+        for (int word = low >> 6; low <= high && word <= high >> 6; word++)
+            rows[word] = 0;
+    }
+}
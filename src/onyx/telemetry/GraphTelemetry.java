@@ -1,22 +1,40 @@
 package onyx.telemetry;
 
 import onyx.graphics.Theme;
-import onyx.util.Utilities;
+import onyx.util.SampleBuffer;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * A static, unmoving, 2D graph of telemetry.
+ * <p>
+ * A graph plots one or more named {@link Series}, each with its own point buffer, color, and plot mode. The axes are
+ * drawn once and shared, and all series are drawn into a single data layer. Graphs start with one series,
+ * {@link #DEFAULT_SERIES}, which {@link #addPoint(double, double, boolean)} and {@link #setPlotMode(int)} act on.
+ * <p>
+ * Adding a point only appends it to a sample buffer; points are rasterized by {@link #render()} on the rendering
+ * thread, which plots only the points added since the previous frame. Points must be added from one thread at a time.
+ * <p>
+ * When many points share a pixel column, they are decimated to the column's extremes before drawing, so drawing cost
+ * is bounded by the plot width rather than the number of points.
  */
 public class GraphTelemetry extends ImageTelemetry {
     private static final int AXIS_LABEL_GUTTER = 4;
     public static final int PLOT_MODE_SCATTER = 0;
     public static final int PLOT_MODE_CONNECT = 1;
+    /**
+     * Name of the series every graph starts with, drawn in the theme's "graph_data" color.
+     */
+    public static final String DEFAULT_SERIES = "data";
 
-    protected ArrayList<Coordinate> points = new ArrayList<>();
+    // Copy-on-write so the rendering thread can iterate while series are added
+    protected volatile Series[] series = new Series[0];
+    protected volatile HashMap<String, Series> seriesMap = new HashMap<>();
+    protected final Series defaultSeries;
+    protected int capacity = -1;
     protected BufferedImage dataImage, composite;
     protected DecimalFormat xFormat, yFormat;
     protected Theme theme;
@@ -24,8 +42,14 @@ public class GraphTelemetry extends ImageTelemetry {
     protected Font font;
     protected String xAxisLabel, yAxisLabel;
     protected double xAxisLower, xAxisUpper, yAxisLower, yAxisUpper, xAxisInterval, yAxisInterval;
-    protected boolean upToDate = true;
-    protected int lineHeight, xAxisLabelWidth, plotMode = PLOT_MODE_SCATTER;
+    protected boolean upToDate = true, axesStale;
+    protected volatile boolean replot;
+    protected int lineHeight, xAxisLabelWidth;
+
+    private final DecimatingRasterizer rasterizer = new DecimatingRasterizer(this);
+    // Per-frame series snapshots, reused across frames
+    private SampleBuffer[] buffers = new SampleBuffer[0];
+    private long[] counts = new long[0];
 
     /**
      * Parameter composition for clearer construction.
@@ -41,6 +65,110 @@ public class GraphTelemetry extends ImageTelemetry {
         public boolean coded;
     }
 
+    /**
+     * A named set of points drawn in one color and plot mode. Points must be added to a series from one thread at a
+     * time, though different series may be fed from different threads.
+     */
+    public class Series {
+        private final String name;
+        private volatile SampleBuffer points;
+        private volatile Color color;
+        private volatile int plotMode;
+
+        // Rendering thread state: the buffer last plotted into the data layer and how many of its points were plotted
+        private SampleBuffer plotted;
+        private long plottedCount;
+
+        private Series(String name, Color color, int plotMode) {
+            this.name = name;
+            this.color = color;
+            this.plotMode = plotMode;
+            points = newBuffer();
+        }
+
+        /**
+         * Gets the series name.
+         *
+         * @return name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Gets the points in this series. Wiping the series replaces the buffer, so the buffer returned only ever grows.
+         *
+         * @return point buffer
+         */
+        public SampleBuffer points() {
+            return points;
+        }
+
+        /**
+         * Gets the color the series is drawn in.
+         *
+         * @return series color, with no color resolved to the theme's "graph_data" color
+         */
+        public Color color() {
+            Color c = color;
+            return c != null ? c : theme.getColor("graph_data");
+        }
+
+        /**
+         * Gets the mode for point plotting.
+         *
+         * @return {@link #PLOT_MODE_SCATTER} or {@link #PLOT_MODE_CONNECT}
+         */
+        public int plotMode() {
+            return plotMode;
+        }
+
+        /**
+         * Plots a point in this series.
+         *
+         * @param x horizontal axis position
+         * @param y vertical axis position
+         */
+        public void addPoint(double x, double y) {
+            points.add(x, y);
+            markDirty();
+
+            UpdateListener listener = updateListener;
+            if (listener != null)
+                listener.pointAdded(GraphTelemetry.this, name, x, y, false);
+        }
+
+        /**
+         * Wipes every point in this series.
+         */
+        public void clear() {
+            points = newBuffer();
+            markDirty();
+        }
+
+        /**
+         * Sets the color the series is drawn in.
+         *
+         * @param color series color, or null for the theme's "graph_data" color
+         */
+        public void setColor(Color color) {
+            this.color = color;
+            replot = true;
+            markDirty();
+        }
+
+        /**
+         * Sets the mode for point plotting.
+         *
+         * @param mode {@link #PLOT_MODE_SCATTER} or {@link #PLOT_MODE_CONNECT}
+         */
+        public void setPlotMode(int mode) {
+            plotMode = mode;
+            replot = true;
+            markDirty();
+        }
+    }
+
     /**
      * Represents a single point of data on the graph.
      */
@@ -81,14 +209,22 @@ public class GraphTelemetry extends ImageTelemetry {
         theme = p.theme;
         xAxisLabelWidth = fontMetrics.stringWidth(xAxisLabel);
         renderAxes();
+        defaultSeries = addSeries(DEFAULT_SERIES, null, PLOT_MODE_SCATTER);
     }
 
     /**
-     * Draws the base graph image, including axes and labels.
+     * Draws the base graph image, including axes and labels. The image is allocated once and redrawn in place.
      */
-    private void renderAxes() {
-        image = new BufferedImage(width + xAxisLabelWidth + AXIS_LABEL_GUTTER,
-                height + lineHeight + AXIS_LABEL_GUTTER, BufferedImage.TYPE_INT_ARGB);
+    protected void renderAxes() {
+        int imageWidth = width + xAxisLabelWidth + AXIS_LABEL_GUTTER;
+        int imageHeight = height + lineHeight + AXIS_LABEL_GUTTER;
+
+        if (image.getWidth() != imageWidth || image.getHeight() != imageHeight
+                || image.getType() != BufferedImage.TYPE_INT_ARGB)
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB);
+        else
+            clearLayer(image);
+
         Graphics2D g = image.createGraphics();
         g.setFont(font);
 
@@ -110,14 +246,15 @@ public class GraphTelemetry extends ImageTelemetry {
         final int Y_AXIS_HORIZONTAL_GUTTER = 2;
 
         // x-axis intervals
-        for (double x = xAxisLower; x <= xAxisUpper; x += xAxisInterval) {
-            // Ignore ticks superposed with the x-axis
-            if (x == 0)
+        for (double x = firstXTick(); x <= xAxisUpper; x += xAxisInterval) {
+            double perc = (x - xAxisLower) / (xAxisUpper - xAxisLower);
+            int xPos = (int) (perc * width) - 1;
+
+            // Ignore ticks superposed with the y-axis
+            if (xPos <= 0)
                 continue;
 
             String lab = xFormat.format(x);
-            double perc = x / (xAxisUpper - xAxisLower);
-            int xPos = (int) (perc * width) - 1;
             g.drawLine(xPos, image.getHeight() - TICK_LENGTH - 1, xPos, image.getHeight() - 1);
 
             g.drawString(lab,
@@ -127,12 +264,12 @@ public class GraphTelemetry extends ImageTelemetry {
 
         // y-axis intervals
         for (double y = yAxisLower; y <= yAxisUpper; y += yAxisInterval) {
-            // Ignore ticks superposed with the y-axis
-            if (y == 0)
+            // Ignore ticks superposed with the x-axis
+            if (y == yAxisLower)
                 continue;
 
             String lab = yFormat.format(y);
-            double perc = y / (yAxisUpper - yAxisLower);
+            double perc = (y - yAxisLower) / (yAxisUpper - yAxisLower);
             int yPos = height - (int) (perc * height) + lineHeight + 1;
             g.drawLine(0, yPos, TICK_LENGTH, yPos);
 
@@ -144,6 +281,135 @@ public class GraphTelemetry extends ImageTelemetry {
         g.dispose();
     }
 
+    /**
+     * Gets the width of the graph image, including axis labels.
+     *
+     * @return width in pixels
+     */
+    @Override
+    public int width() {
+        return image.getWidth();
+    }
+
+    /**
+     * Gets the height of the graph image, including axis labels.
+     *
+     * @return height in pixels
+     */
+    @Override
+    public int height() {
+        return image.getHeight();
+    }
+
+    /**
+     * Gets the horizontal axis value of the first x-axis tick.
+     *
+     * @return tick value
+     */
+    protected double firstXTick() {
+        return xAxisLower;
+    }
+
+    /**
+     * Adds a new series to the graph, or gets the existing series with the same name.
+     *
+     * @param name     series name
+     * @param color    series color, or null for the theme's "graph_data" color
+     * @param plotMode {@link #PLOT_MODE_SCATTER} or {@link #PLOT_MODE_CONNECT}
+     * @return series handle, for adding points without a name lookup
+     */
+    public synchronized Series addSeries(String name, Color color, int plotMode) {
+        Series existing = seriesMap.get(name);
+
+        if (existing != null)
+            return existing;
+
+        Series added = new Series(name, color, plotMode);
+        HashMap<String, Series> nextMap = new HashMap<>(seriesMap);
+        nextMap.put(name, added);
+        Series[] next = new Series[series.length + 1];
+        System.arraycopy(series, 0, next, 0, series.length);
+        next[series.length] = added;
+
+        seriesMap = nextMap;
+        series = next;
+        return added;
+    }
+
+    /**
+     * Gets a series by name.
+     *
+     * @param name series name
+     * @return series handle, or null if not found
+     */
+    public Series series(String name) {
+        return seriesMap.get(name);
+    }
+
+    /**
+     * Gets the number of points each series keeps.
+     *
+     * @return points retained per series, or -1 if series keep every point
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets every series, in drawing order.
+     *
+     * @return series handles
+     */
+    public Series[] series() {
+        return series.clone();
+    }
+
+    /**
+     * Gets the size of the plotting area, which is drawn at the graph's position with the axis labels beyond it.
+     *
+     * @return plot width and height in pixels
+     */
+    public Dimension plotSize() {
+        return new Dimension(width, height);
+    }
+
+    /**
+     * Gets the horizontal axis bounds currently shown.
+     *
+     * @return lower and upper bound
+     */
+    public double[] xAxisBounds() {
+        return new double[]{xAxisLower, xAxisUpper};
+    }
+
+    /**
+     * Gets the vertical axis bounds.
+     *
+     * @return lower and upper bound
+     */
+    public double[] yAxisBounds() {
+        return new double[]{yAxisLower, yAxisUpper};
+    }
+
+    /**
+     * Wipes every point in every series.
+     */
+    public void clear() {
+        for (Series s : series)
+            s.clear();
+    }
+
+    /**
+     * Plots a point in a named series.
+     *
+     * @param name series name
+     * @param x    horizontal axis position
+     * @param y    vertical axis position
+     */
+    public void addPoint(String name, double x, double y) {
+        seriesMap.get(name).addPoint(x, y);
+    }
+
     /**
      * Plots a point on the graph.
      *
@@ -152,37 +418,28 @@ public class GraphTelemetry extends ImageTelemetry {
      * @param clean whether or not to wipe the previous points
      */
     public void addPoint(double x, double y, boolean clean) {
-        points.add(new Coordinate(x, y));
-
-        if (clean || dataImage == null)
-            dataImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        if (clean) {
+            // Fill the new buffer before publishing it so a frame never sees it empty
+            SampleBuffer fresh = newBuffer();
+            fresh.add(x, y);
+            defaultSeries.points = fresh;
+            markDirty();
 
-        Graphics2D g = dataImage.createGraphics();
-        g.setColor(theme.getColor("graph_data"));
-        // pixel:unit ratios
-        double xRatio = width / (xAxisUpper - xAxisLower);
-        double yRatio = height / (yAxisUpper - yAxisLower);
-
-        // Draw the initial point
-        Coordinate firstPoint = points.get(0);
-        int xLast = (int) ((firstPoint.x - xAxisLower) * xRatio);
-        int yLast = height - (int) ((firstPoint.y - yAxisLower) * yRatio) + lineHeight + AXIS_LABEL_GUTTER;
-        g.drawLine(xLast, yLast, xLast, yLast);
-
-        // Draw all subsequent points
-        for (int i = 1; i < points.size(); i++) {
-            Coordinate point = points.get(i);
-            int xPos = (int) ((point.x - xAxisLower) * xRatio);
-            int yPos = height - (int) ((point.y - yAxisLower) * yRatio) + lineHeight + AXIS_LABEL_GUTTER;
-            // Connect if specified by the plot mode
-            g.drawLine(xPos, yPos,
-                    plotMode == PLOT_MODE_CONNECT ? xLast : xPos,
-                    plotMode == PLOT_MODE_CONNECT ? yLast : yPos);
-            xLast = xPos;
-            yLast = yPos;
+            UpdateListener listener = updateListener;
+            if (listener != null)
+                listener.pointAdded(this, DEFAULT_SERIES, x, y, true);
+        } else {
+            defaultSeries.addPoint(x, y);
         }
+    }
 
-        g.dispose();
+    /**
+     * Creates an empty point buffer for a series.
+     *
+     * @return unbounded buffer, or a ring buffer if the graph has a capacity
+     */
+    protected SampleBuffer newBuffer() {
+        return capacity == -1 ? new SampleBuffer() : new SampleBuffer(capacity);
     }
 
     /**
@@ -191,6 +448,58 @@ public class GraphTelemetry extends ImageTelemetry {
      * @return image of graph
      */
     public BufferedImage render() {
+        Series[] all = series;
+        boolean reset = replot;
+        double newest = Double.NEGATIVE_INFINITY;
+
+        // Take one snapshot of every series so the whole frame agrees on what has been added
+        if (buffers.length < all.length) {
+            buffers = new SampleBuffer[all.length];
+            counts = new long[all.length];
+        }
+
+        for (int i = 0; i < all.length; i++) {
+            buffers[i] = all[i].points;
+            counts[i] = buffers[i].size();
+
+            // The data layer is shared, so wiping any series means redrawing them all
+            if (buffers[i] != all[i].plotted)
+                reset = true;
+        }
+
+        if (reset) {
+            replot = false;
+            upToDate = false;
+
+            if (dataImage != null)
+                clearLayer(dataImage);
+
+            for (int i = 0; i < all.length; i++) {
+                all[i].plotted = buffers[i];
+                all[i].plottedCount = buffers[i].start(counts[i]);
+            }
+        }
+
+        for (int i = 0; i < all.length; i++)
+            if (counts[i] > all[i].plottedCount)
+                newest = Math.max(newest, buffers[i].x(counts[i] - 1));
+
+        if (newest != Double.NEGATIVE_INFINITY) {
+            // Moving the window may leave nothing worth keeping, in which case every retained point is redrawn
+            if (advanceWindow(newest))
+                for (int i = 0; i < all.length; i++)
+                    all[i].plottedCount = buffers[i].start(counts[i]);
+
+            plot(all);
+            upToDate = false;
+        }
+
+        if (axesStale) {
+            axesStale = false;
+            renderAxes();
+            upToDate = false;
+        }
+
         if (upToDate && composite != null)
             return composite;
 
@@ -198,14 +507,97 @@ public class GraphTelemetry extends ImageTelemetry {
         if (dataImage == null)
             return image;
 
-        // Clone the data image and composite the base (axes) image on top
-        composite = Utilities.cloneImage(dataImage);
+        // Copy the data layer into the composite and draw the axes layer on top
+        if (composite == null || composite.getWidth() != image.getWidth()
+                || composite.getHeight() != image.getHeight())
+            composite = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+
         Graphics2D g = composite.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(dataImage, 0, 0, null);
+        g.setComposite(AlphaComposite.SrcOver);
         g.drawImage(image, 0, 0, null);
         g.dispose();
+        upToDate = true;
         return composite;
     }
 
+    /**
+     * Clears a layer to full transparency in place.
+     *
+     * @param layer layer image
+     */
+    protected static void clearLayer(BufferedImage layer) {
+        Graphics2D g = layer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+        g.dispose();
+    }
+
+    /**
+     * Called before new points are drawn, with the largest horizontal value among them. Subclasses with moving axes
+     * may adjust the axes and data layer here.
+     *
+     * @param newest horizontal axis position of the newest point
+     * @return whether or not the data layer was wiped, so all retained points must be redrawn
+     */
+    protected boolean advanceWindow(double newest) {
+        return false;
+    }
+
+    /**
+     * Draws the points added to each series since the last frame onto the data layer in one pass, connecting each
+     * series' first new point to its predecessor if the plot mode calls for it and the predecessor is still in the
+     * buffer. Dense runs of points are decimated to a few draw calls per pixel column.
+     *
+     * @param all series to draw, in the order of the current buffer and count snapshots
+     */
+    private void plot(Series[] all) {
+        if (dataImage == null)
+            dataImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g = dataImage.createGraphics();
+
+        for (int i = 0; i < all.length; i++) {
+            Series s = all[i];
+            long start = buffers[i].start(counts[i]);
+            // Points overwritten in a ring buffer before they were plotted are skipped
+            long from = Math.max(s.plottedCount, start);
+
+            if (from < counts[i]) {
+                Color col = s.color;
+                g.setColor(col == null ? theme.getColor("graph_data") : col);
+                rasterizer.draw(g, dataImage.getHeight(), buffers[i], from, counts[i],
+                        s.plotMode == PLOT_MODE_CONNECT, from != start);
+            }
+
+            s.plottedCount = counts[i];
+        }
+
+        g.dispose();
+    }
+
+    /**
+     * Converts a horizontal axis value to a pixel column in the data image.
+     *
+     * @param x horizontal axis position
+     * @return pixels from image left
+     */
+    protected int xPixel(double x) {
+        return (int) ((x - xAxisLower) * (width / (xAxisUpper - xAxisLower)));
+    }
+
+    /**
+     * Converts a vertical axis value to a pixel row in the data image.
+     *
+     * @param y vertical axis position
+     * @return pixels from image top
+     */
+    protected int yPixel(double y) {
+        return height - (int) ((y - yAxisLower) * (height / (yAxisUpper - yAxisLower))) + lineHeight
+                + AXIS_LABEL_GUTTER;
+    }
+
     /**
      * Sets the mode for point plotting. {@link #PLOT_MODE_CONNECT} will connect subsequent points, and
      * {@link #PLOT_MODE_SCATTER} will leave them disconnected.
@@ -213,6 +605,6 @@ public class GraphTelemetry extends ImageTelemetry {
      * @param mode plot mode
      */
     public void setPlotMode(int mode) {
-        plotMode = mode;
+        defaultSeries.setPlotMode(mode);
     }
 }
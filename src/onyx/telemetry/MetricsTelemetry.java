@@ -0,0 +1,137 @@
+package onyx.telemetry;
+
+import onyx.graphics.CodeTable;
+import onyx.graphics.FrameListener;
+import onyx.graphics.RenderMetrics;
+import onyx.util.FixedPointFormat;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * A paragraph showing a display's own {@link RenderMetrics}: achieved and target frame rate, frame time percentiles,
+ * dropped frames, allocation per frame, blit time and the slowest telemetry modules.
+ * <p>
+ * The overlay refreshes itself when registered as a {@link FrameListener} of the display it measures, at most once per
+ * refresh interval so that it does not keep every frame dirty. Lines are built in a reused buffer, and values are
+ * highlighted with color codes that can be changed with {@link #setColorCodes(String, String, String)}.
+ */
+public class MetricsTelemetry extends ParagraphTelemetry implements FrameListener {
+    private static final int SLOWEST_MODULES = 3;
+
+    private static final FixedPointFormat ONE_PLACE = new FixedPointFormat(1, 1), TWO_PLACES = new FixedPointFormat(1, 2);
+
+    private final RenderMetrics metrics;
+    private final long intervalNanos;
+    private final StringBuilder line = new StringBuilder();
+    private long lastRefresh;
+    private String valueCode = code("g"), nameCode = code("c"), resetCode = code("w");
+
+    /**
+     * Creates a new metrics overlay.
+     *
+     * @param x               horizontal position from interface left
+     * @param y               vertical position from interface top
+     * @param fontMetrics     font metrics for text dimension calculations
+     * @param metrics         metrics to show
+     * @param intervalMillis  minimum time between refreshes
+     */
+    public MetricsTelemetry(int x, int y, FontMetrics fontMetrics, RenderMetrics metrics, long intervalMillis) {
+        super(x, y, true, fontMetrics, "#bRender metrics", new String[5 + SLOWEST_MODULES]);
+
+        this.metrics = metrics;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        lastRefresh = System.nanoTime() - intervalNanos;
+        refresh();
+    }
+
+    /**
+     * Sets the color codes used to highlight values and module names, and the code that returns to the text color
+     * after each. The defaults are "g", "c" and "w". Takes effect at the next refresh.
+     *
+     * @param value color code for values, without the leading '!'
+     * @param name  color code for module names
+     * @param reset color code of the surrounding text, normally one drawn in the theme's text color
+     */
+    public synchronized void setColorCodes(String value, String name, String reset) {
+        valueCode = code(value);
+        nameCode = code(name);
+        resetCode = code(reset);
+    }
+
+    /**
+     * Refreshes the shown metrics if the refresh interval has passed.
+     *
+     * @param frame   back buffer holding the frame
+     * @param changed whether or not any part of the frame was redrawn
+     */
+    @Override
+    public void frameRendered(BufferedImage frame, boolean changed) {
+        long now = System.nanoTime();
+
+        if (now - lastRefresh < intervalNanos)
+            return;
+
+        lastRefresh = now;
+        refresh();
+    }
+
+    /**
+     * Rewrites every line from the current metrics.
+     */
+    public synchronized void refresh() {
+        int target = metrics.getTargetFps();
+        line.setLength(0);
+        line.append("FPS: ").append(valueCode);
+        ONE_PLACE.format(metrics.getAchievedFps(), line).append(resetCode).append(" / ");
+        setLine(0, (target == 0 ? line.append('-') : line.append(target)).toString());
+
+        line.setLength(0);
+        line.append("Frame: ");
+        TWO_PLACES.format(metrics.getMeanFrameMicros() / 1000, line).append(" ms mean, ");
+        TWO_PLACES.format(metrics.getFrameMicrosPercentile(0.99) / 1000.0, line).append(" ms p99, ");
+        TWO_PLACES.format(metrics.getMaxFrameMicros() / 1000.0, line).append(" ms max");
+        setLine(1, line.toString());
+
+        line.setLength(0);
+        setLine(2, line.append("Dropped: ").append(metrics.getDroppedFrames()).append(" of ").append(metrics.getFrames())
+                .toString());
+
+        double bytes = metrics.getMeanBytesPerFrame();
+        line.setLength(0);
+        line.append("Alloc: ");
+        setLine(3, (bytes < 0 ? line.append('-') : ONE_PLACE.format(bytes / 1024, line).append(" KB/frame"))
+                .toString());
+
+        line.setLength(0);
+        line.append("Blit: ");
+        setLine(4, TWO_PLACES.format(metrics.getBlitMicros() / 1000, line).append(" ms").toString());
+
+        // Slowest modules first
+        ArrayList<Map.Entry<String, Double>> modules = new ArrayList<>(metrics.getModuleMicros().entrySet());
+        modules.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+
+        for (int i = 0; i < SLOWEST_MODULES; i++) {
+            line.setLength(0);
+
+            if (i < modules.size()) {
+                line.append(nameCode).append(modules.get(i).getKey()).append(resetCode).append(": ");
+                TWO_PLACES.format(modules.get(i).getValue() / 1000, line).append(" ms");
+            }
+
+            setLine(5 + i, line.toString());
+        }
+    }
+
+    /**
+     * Writes a color code as it appears in coded text, enclosing codes longer than one character in braces.
+     *
+     * @param code color code
+     * @return coded text selecting the color
+     */
+    private static String code(String code) {
+        return code.length() == 1 ? CodeTable.BEGIN_COLOR_CODE + code : CodeTable.BEGIN_COLOR_CODE + "{" + code + "}";
+    }
+}
@@ -1,16 +1,34 @@
 package onyx.telemetry;
 
+import onyx.graphics.FormattedText;
+import onyx.graphics.TextFormatter;
+
 import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A text telemetry module with a title followed by several indented lines.
+ * <p>
+ * Lines are stored in a copy-on-write array: each update publishes a new array with a compare-and-set, so updating
+ * threads never block and a frame always draws a consistent set of lines.
  */
 public class ParagraphTelemetry extends TextTelemetry {
     public static final String TAB = "    ";
 
+    private static final AtomicReferenceFieldUpdater<ParagraphTelemetry, String[]> DATA =
+            AtomicReferenceFieldUpdater.newUpdater(ParagraphTelemetry.class, String[].class, "data");
+
     protected final FontMetrics fontMetrics;
     protected volatile String[] data;
-    protected int width = -1, height = -1;
+    protected volatile int width;
+
+    // Layout of the last measured data() snapshot; each line is remeasured only when its text changes. Guarded by its
+    // own lock rather than the module's, so subclasses updating lines under the module lock never wait on measuring
+    private final Object layoutLock = new Object();
+    private String[] measuredData;
+    private String[] measuredLines = new String[0];
+    private int[] lineWidths = new int[0];
 
     /**
      * Creates a new ParagraphTelemetry with data. Immutable once constructed.
@@ -43,24 +61,52 @@ public class ParagraphTelemetry extends TextTelemetry {
     }
 
     /**
-     * Gets the pixel width of paragraph (the longest line).
+     * Gets the pixel width of paragraph (the longest line). Lines are measured by their visible text, without format
+     * codes, and only when they change; the width of an unchanged {@link #data()} snapshot is returned without
+     * measuring anything.
      *
      * @return width in pixels
      */
     public int width() {
-        if (width != -1)
-            return width;
+        String[] lines = data();
+
+        synchronized (layoutLock) {
+            if (lines == measuredData)
+                return width;
+
+            if (measuredLines.length != lines.length) {
+                measuredLines = Arrays.copyOf(measuredLines, lines.length);
+                lineWidths = Arrays.copyOf(lineWidths, lines.length);
+            }
+
+            int longestLine = 0;
 
-        int longestLine = Integer.MIN_VALUE;
+            for (int i = 0; i < lines.length; i++) {
+                if (measuredLines[i] != lines[i]) {
+                    lineWidths[i] = measureLine(i, lines[i]);
+                    measuredLines[i] = lines[i];
+                }
 
-        for (String line : data) {
-            int lineWidth = fontMetrics.stringWidth(line);
-            if (lineWidth > longestLine)
-                longestLine = lineWidth;
+                longestLine = Math.max(longestLine, lineWidths[i]);
+            }
+
+            measuredData = lines;
+            width = longestLine;
+            return longestLine;
         }
+    }
 
-        width = longestLine;
-        return width;
+    /**
+     * Gets the pixel width of a single line of the current {@link #data()} snapshot, measuring only lines that changed.
+     *
+     * @param index line index (0 for the title)
+     * @return width in pixels, or 0 if the line is empty or out of range
+     */
+    public int lineWidth(int index) {
+        synchronized (layoutLock) {
+            width();
+            return index >= 0 && index < lineWidths.length ? lineWidths[index] : 0;
+        }
     }
 
     /**
@@ -69,11 +115,44 @@ public class ParagraphTelemetry extends TextTelemetry {
      * @return height in pixels
      */
     public int height() {
-        if (height != -1)
-            return height;
+        return fontMetrics.getHeight() * (1 + data().length);
+    }
+
+    /**
+     * Sets the formatter used to compile coded lines and discards the layout, which was measured with the previous one.
+     *
+     * @param formatter text formatter
+     */
+    @Override
+    public void setFormatter(TextFormatter formatter) {
+        synchronized (layoutLock) {
+            measuredData = null;
+            Arrays.fill(measuredLines, null);
+        }
 
-        height = fontMetrics.getHeight() * (1 + data.length);
-        return height;
+        super.setFormatter(formatter);
+    }
+
+    /**
+     * Measures the visible width of a line. Coded lines are measured by their compiled runs, which are then cached for
+     * drawing; until a formatter is set, they are measured with their codes.
+     *
+     * @param index line index into the data snapshot
+     * @param line  line text
+     * @return width in pixels
+     */
+    protected int measureLine(int index, String line) {
+        if (line == null)
+            return 0;
+
+        if (coded) {
+            FormattedText compiled = formattedLine(index, line);
+
+            if (compiled != null)
+                return compiled.width();
+        }
+
+        return fontMetrics.stringWidth(line);
     }
 
     /**
@@ -82,11 +161,10 @@ public class ParagraphTelemetry extends TextTelemetry {
      * @param newTitle new title text
      */
     public void setTitle(String newTitle) {
-        data[0] = TAB + newTitle;
-        int newTitleWidth = fontMetrics.stringWidth(data[0]);
-
-        if (newTitleWidth > width)
-            width = newTitleWidth;
+        String line = TAB + newTitle;
+        replaceLine(0, line);
+        compileLine(0, line);
+        markDirty();
     }
 
     /**
@@ -96,10 +174,53 @@ public class ParagraphTelemetry extends TextTelemetry {
      * @param newLine new line text (indenting is added automatically)
      */
     public void setLine(int index, String newLine) {
-        data[index + 1] = TAB + newLine;
-        int newLineWidth = fontMetrics.stringWidth(data[index + 1]);
+        String line = TAB + newLine;
+        replaceLine(index + 1, line);
+        compileLine(index + 1, line);
+        markDirty();
+    }
+
+    /**
+     * Publishes a copy of the data array with one line replaced.
+     *
+     * @param index index into the data array
+     * @param line  new line text
+     */
+    protected void replaceLine(int index, String line) {
+        String[] current, next;
+
+        do {
+            current = data;
+            next = current.clone();
+            next[index] = line;
+        } while (!DATA.compareAndSet(this, current, next));
+    }
+
+    /**
+     * Publishes a copy of the data array with an empty line added to the end.
+     *
+     * @return index of the new line in the data array
+     */
+    protected int appendLine() {
+        String[] current, next;
+
+        do {
+            current = data;
+            next = new String[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+        } while (!DATA.compareAndSet(this, current, next));
 
-        if (newLineWidth > width)
-            width = newLineWidth;
+        return current.length;
+    }
+
+    /**
+     * Publishes a new data array if the current one is unchanged.
+     *
+     * @param expected array the update was computed from
+     * @param next     updated array
+     * @return if the update was published
+     */
+    protected boolean compareAndSetData(String[] expected, String[] next) {
+        return DATA.compareAndSet(this, expected, next);
     }
 }
@@ -0,0 +1,89 @@
+package onyx.telemetry;
+
+import java.awt.*;
+
+/**
+ * A 2D graph whose x-axis window scrolls to follow the newest data, like a strip chart.
+ * <p>
+ * Points are kept in fixed-capacity ring buffers, so memory does not grow with the length of the feed. The graph is
+ * drawn incrementally: when new points run past the right edge of the window, the existing plot is shifted left by
+ * whole pixels and only the new points are drawn, rather than replotting history. Points are expected to arrive in
+ * order of increasing x.
+ */
+public class ScrollingGraphTelemetry extends GraphTelemetry {
+    protected final double windowSpan;
+
+    /**
+     * Creates a new scrolling graph with nothing plotted. The initial window spans
+     * {@link Parameters#xAxisLower} to {@link Parameters#xAxisUpper}, and keeps that span as it scrolls.
+     *
+     * @param p        graph parameters
+     * @param capacity maximum number of points retained per series
+     */
+    public ScrollingGraphTelemetry(Parameters p, int capacity) {
+        super(p);
+        windowSpan = xAxisUpper - xAxisLower;
+        this.capacity = capacity;
+        defaultSeries.clear();
+    }
+
+    /**
+     * Places ticks on multiples of the x-axis interval so they scroll with the data.
+     *
+     * @return tick value
+     */
+    @Override
+    protected double firstXTick() {
+        return Math.ceil(xAxisLower / xAxisInterval) * xAxisInterval;
+    }
+
+    /**
+     * Scrolls the window to fit the newest point, shifting the data layer to match.
+     *
+     * @param newest horizontal axis position of the newest point
+     * @return whether or not the data layer was wiped
+     */
+    @Override
+    protected boolean advanceWindow(double newest) {
+        if (newest <= xAxisUpper)
+            return false;
+
+        // Advance in whole pixels so the shifted raster lines up with freshly drawn points
+        double unitsPerPixel = windowSpan / width;
+        int shift = (int) Math.ceil((newest - xAxisUpper) / unitsPerPixel);
+        xAxisUpper += shift * unitsPerPixel;
+        xAxisLower = xAxisUpper - windowSpan;
+        axesStale = true;
+
+        // Nothing on screen survives the shift; whatever history is still in the window gets replotted
+        if (shift > width) {
+            if (dataImage != null)
+                clearLayer(dataImage);
+
+            return true;
+        }
+
+        if (dataImage != null)
+            shiftLeft(shift);
+
+        return false;
+    }
+
+    /**
+     * Shifts the plot area of the data image left, clearing the columns that scroll in on the right.
+     *
+     * @param shift pixels to shift by
+     */
+    private void shiftLeft(int shift) {
+        Graphics2D g = dataImage.createGraphics();
+        int rows = dataImage.getHeight();
+        // Points at the top of the window land one column past the plot width
+        int columns = width + 1;
+        // Transparent pixels must overwrite what they land on rather than blend with it
+        g.setComposite(AlphaComposite.Src);
+        g.copyArea(shift, 0, columns - shift, rows, -shift, 0);
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(columns - shift, 0, shift, rows);
+        g.dispose();
+    }
+}
@@ -2,10 +2,21 @@ package onyx.telemetry;
 
 /**
  * A thread-safe collection of data for printing to a Display.
+ * <p>
+ * Updates never wait on drawing: modules either swap in immutable snapshots of their data, append to buffers that the
+ * rendering thread reads up to a published size, or, like {@link ConsoleTelemetry}, hold a short lock that the
+ * rendering thread only takes to copy what it will draw. A frame therefore sees a consistent view of each module, and
+ * threads updating telemetry are never blocked by formatting or drawing.
+ * <p>
+ * Displays only redraw telemetry that has changed since the previous frame. Modules signal a change by calling
+ * {@link #markDirty()} whenever their contents, position, or size are updated.
  */
 public abstract class Telemetry {
     protected int x, y;
     protected boolean coded;
+    protected volatile UpdateListener updateListener;
+
+    private volatile boolean dirty = true;
 
     /**
      * Creates a new piece of telemetry at some position.
@@ -61,5 +72,46 @@ public abstract class Telemetry {
      * @return height in pixels
      */
     public abstract int height();
-}
 
+    /**
+     * Sets the listener notified of each update to this telemetry's contents.
+     *
+     * @param listener update listener, or null for none
+     */
+    public void setUpdateListener(UpdateListener listener) {
+        updateListener = listener;
+    }
+
+    /**
+     * Gets the listener notified of each update to this telemetry's contents.
+     *
+     * @return update listener, or null if there is none
+     */
+    public UpdateListener updateListener() {
+        return updateListener;
+    }
+
+    /**
+     * Flags this telemetry as changed so that it is redrawn on the next frame.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Clears the changed flag. Displays call this immediately before drawing the telemetry, so changes made while a
+     * frame is being drawn are picked up by the next one.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    /**
+     * Gets whether or not this telemetry has changed since it was last drawn.
+     *
+     * @return if the telemetry needs to be redrawn
+     */
+    public boolean dirty() {
+        return dirty;
+    }
+}
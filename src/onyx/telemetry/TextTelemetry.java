@@ -1,9 +1,19 @@
 package onyx.telemetry;
 
+import onyx.graphics.FormattedText;
+import onyx.graphics.TextFormatter;
+
 /**
  * A telemetry module composed of plaintext.
+ * <p>
+ * Coded lines are compiled into {@link FormattedText} runs once per change rather than on every frame. Subclasses
+ * call {@link #compileLine(int, String)} when they set a line; lines changed without it are compiled the first time
+ * they are drawn. Compiled lines are matched to their text by identity, so a frame drawing one {@link #data()}
+ * snapshot never picks up runs compiled for another.
  */
 public abstract class TextTelemetry extends Telemetry {
+    protected volatile TextFormatter formatter;
+    protected volatile FormattedText[] formatted = new FormattedText[0];
 
     /**
      * Creates a new TextTelemetry at some position.
@@ -17,9 +27,67 @@ public abstract class TextTelemetry extends Telemetry {
     }
 
     /**
-     * Gets the telemetry text.
+     * Gets the telemetry text. Implementations return an array that is never modified after it is returned, so callers
+     * see a consistent snapshot of every line.
      *
      * @return array of individual lines of data
      */
     public abstract String[] data();
+
+    /**
+     * Sets the formatter used to compile coded lines, discarding any lines compiled with the previous one. Called by
+     * the display the telemetry is added to.
+     *
+     * @param formatter text formatter
+     */
+    public void setFormatter(TextFormatter formatter) {
+        this.formatter = formatter;
+        formatted = new FormattedText[0];
+        markDirty();
+    }
+
+    /**
+     * Gets a line compiled into styled runs, compiling it if it has not been compiled yet.
+     *
+     * @param index line index into a {@link #data()} snapshot
+     * @param line  text of that line in the snapshot
+     * @return compiled line, or null if the line is null or no formatter has been set
+     */
+    public FormattedText formattedLine(int index, String line) {
+        FormattedText[] lines = formatted;
+
+        if (index < lines.length && lines[index] != null && lines[index].source() == line)
+            return lines[index];
+
+        return compileLine(index, line);
+    }
+
+    /**
+     * Compiles a line of text and caches the result under its line index. Does nothing if the telemetry is uncoded or
+     * no formatter has been set.
+     *
+     * @param index line index
+     * @param line  line text
+     * @return compiled line, or null if nothing was compiled
+     */
+    protected FormattedText compileLine(int index, String line) {
+        TextFormatter f = formatter;
+
+        if (!coded || f == null)
+            return null;
+
+        FormattedText compiled = f.compile(line);
+        FormattedText[] lines = formatted;
+
+        // Grow the cache to fit; a lost race only costs a recompile, since lookups check the source text
+        if (index >= lines.length) {
+            FormattedText[] temp = new FormattedText[Math.max(index + 1, data().length)];
+            System.arraycopy(lines, 0, temp, 0, lines.length);
+            lines = temp;
+            formatted = lines;
+        }
+
+        lines[index] = compiled;
+        return compiled;
+    }
 }
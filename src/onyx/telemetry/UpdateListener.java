@@ -0,0 +1,66 @@
+package onyx.telemetry;
+
+/**
+ * Observes the updates made to telemetry modules, such as to record them for replay. A module with a listener calls
+ * it on the updating thread after each update is published, so listeners may be called from several threads at once
+ * and should return quickly.
+ *
+ * @see Telemetry#setUpdateListener(UpdateListener)
+ */
+public interface UpdateListener {
+    /**
+     * Called when a value is put into a value map by {@link ValueMapTelemetry#put(String, Object)}.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param value  value
+     */
+    void valuePut(Telemetry source, String label, Object value);
+
+    /**
+     * Called when a value map label is set to a new floating point value.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param value  value
+     */
+    void valueSet(Telemetry source, String label, double value);
+
+    /**
+     * Called when a value map label is set to a new whole number.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param value  value
+     */
+    void valueSet(Telemetry source, String label, long value);
+
+    /**
+     * Called when a value map label is set to a new boolean.
+     *
+     * @param source value map
+     * @param label  value label
+     * @param value  value
+     */
+    void valueSet(Telemetry source, String label, boolean value);
+
+    /**
+     * Called when a point is plotted on a graph.
+     *
+     * @param source graph
+     * @param series series name
+     * @param x      horizontal axis position
+     * @param y      vertical axis position
+     * @param clean  whether or not the series was wiped before the point was plotted
+     */
+    void pointAdded(Telemetry source, String series, double x, double y, boolean clean);
+
+    /**
+     * Called when an entry is logged to a console.
+     *
+     * @param source console
+     * @param line   entry text
+     * @param time   associated time, or NaN for no timestamp
+     */
+    void lineLogged(Telemetry source, String line, double time);
+}
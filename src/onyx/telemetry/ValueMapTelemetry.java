@@ -1,20 +1,83 @@
 package onyx.telemetry;
 
+import onyx.util.FixedPointFormat;
+
 import java.awt.FontMetrics;
 import java.text.DecimalFormat;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An variation of the paragraph-style telemetry that displays a map of values and their labels. The module begins with
  * a title header, and is followed by indented lines, each a label-value pair separated by a colon.
+ * <p>
+ * Values may be put from any thread. Each label's line is published atomically, so frames never show a partially
+ * updated line. Put values are formatted on the putting thread and left in the label's slot, like values set through
+ * handles; only the frame publishes lines, so putting never waits for a frame and the newest value of a label is always
+ * the one shown.
+ * <p>
+ * Numeric values that change often should be updated through a handle: {@link #register(String)} a label once, then
+ * {@link #set(int, double)} its value. Setting a value only stores it; values that changed are formatted together when
+ * a frame next asks for the telemetry's {@link #data()}, so values overwritten between frames are never formatted.
+ * Doubles, longs and booleans are stored as primitive bits, never boxed, and may also be put by label with
+ * {@link #putDouble(String, double)}, {@link #putLong(String, long)} and {@link #putBoolean(String, boolean)}.
  */
 public class ValueMapTelemetry extends ParagraphTelemetry {
-    protected HashMap<String, Object> valueMap = new HashMap<>();
-    protected HashMap<String, Integer> indexMap = new HashMap<>();
-    protected HashMap<String, DecimalFormat> formatMap = new HashMap<>();
+    private static final int DOUBLE = 0, LONG = 1, BOOLEAN = 2, TEXT = 3;
+
+    protected ConcurrentHashMap<String, Object> valueMap = new ConcurrentHashMap<>();
+    protected ConcurrentHashMap<String, Integer> indexMap = new ConcurrentHashMap<>();
+    protected ConcurrentHashMap<String, DecimalFormat> formatMap = new ConcurrentHashMap<>();
     protected FontMetrics fontMetrics;
     protected String title;
 
+    // Values set through handles; the array is copied on write, but slots are shared between copies
+    private volatile Slot[] slots = new Slot[0];
+    private final ConcurrentHashMap<String, Integer> handleMap = new ConcurrentHashMap<>();
+    private volatile boolean pending;
+    // Held while registering labels, so each label gets one slot
+    private final Object registerLock = new Object();
+    // Scratch space for formatting, used while holding the instance lock
+    private final StringBuilder lineBuilder = new StringBuilder();
+    private int[] changedLines = new int[0];
+    private String[] changedText = new String[0];
+
+    /**
+     * A label's latest value. Numeric values are stored as raw bits alongside their type; put values are stored as
+     * their formatted text.
+     */
+    private static class Slot {
+        final int line;
+        final String label, prefix;
+        volatile int kind;
+        volatile long bits;
+        volatile String text;
+        volatile boolean assigned, stale;
+        volatile DecimalFormat format;
+        volatile FixedPointFormat fixedFormat;
+
+        /**
+         * Creates an empty slot.
+         *
+         * @param line  index of the label's line in the data array
+         * @param label value label
+         */
+        Slot(int line, String label) {
+            this.line = line;
+            this.label = label;
+            prefix = TAB + label + ": ";
+        }
+
+        /**
+         * Sets the format the value is printed with.
+         *
+         * @param format decimal format, or null to print values in full
+         */
+        void setFormat(DecimalFormat format) {
+            this.format = format;
+            fixedFormat = format == null ? null : FixedPointFormat.of(format);
+        }
+    }
+
     /**
      * Creates a new telemetry module with an empty value map.
      *
@@ -39,21 +102,180 @@ public class ValueMapTelemetry extends ParagraphTelemetry {
      * @param value      value
      */
     public void put(String identifier, Object value) {
-        int oldSize = valueMap.size();
-
         valueMap.put(identifier, value);
+        // Registering may grow the slot array, so the handle is taken before the array is read
+        int handle = handle(identifier);
+        Slot slot = slots[handle];
+
+        // Format value if a format was specified; DecimalFormat is not thread-safe
+        DecimalFormat format = formatMap.get(identifier);
+        String valueString;
 
-        // Map changed size; increase size of data array and map the new value to the newly created index
-        if (oldSize != valueMap.size()) {
-            indexMap.put(identifier, valueMap.size() - 1);
-            resize();
+        if (format == null) {
+            valueString = value.toString();
+        } else {
+            synchronized (format) {
+                valueString = format.format(value);
+            }
         }
 
-        // Format value if a format was specified
-        DecimalFormat format = formatMap.get(identifier);
-        String valueString = format == null ? value.toString() : format.format(value);
+        // Published by the next frame along with values set through handles, so an older value never lands over it
+        slot.text = valueString;
+        slot.kind = TEXT;
+        slot.assigned = true;
+        slot.stale = true;
+        pending = true;
+        markDirty();
+
+        UpdateListener listener = updateListener;
+        if (listener != null)
+            listener.valuePut(this, identifier, value);
+    }
+
+    /**
+     * Registers a label for fast numeric updates. The label is given a line at the end of the telemetry, with no value,
+     * if it does not have one yet. Registering a label again returns the same handle.
+     *
+     * @param identifier label
+     * @return handle to pass to {@link #set(int, double)}
+     */
+    public int register(String identifier) {
+        synchronized (registerLock) {
+            Integer existing = handleMap.get(identifier);
+            if (existing != null)
+                return existing;
+
+            int index = indexMap.computeIfAbsent(identifier, k -> appendLine());
+            Slot slot = new Slot(index, identifier);
+            slot.setFormat(formatMap.get(identifier));
+
+            // Show the label until its first value is set
+            if (data[index] == null) {
+                replaceLine(index, slot.prefix);
+                compileLine(index, slot.prefix);
+                markDirty();
+            }
+
+            Slot[] next = new Slot[slots.length + 1];
+            System.arraycopy(slots, 0, next, 0, slots.length);
+            next[slots.length] = slot;
+            slots = next;
+
+            handleMap.put(identifier, slots.length - 1);
+            return slots.length - 1;
+        }
+    }
+
+    /**
+     * Sets the value of a registered label. The value is formatted lazily, when a frame next needs it, and only if it
+     * changed.
+     *
+     * @param handle handle returned by {@link #register(String)}
+     * @param value  new value
+     */
+    public void set(int handle, double value) {
+        store(slots[handle], DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Sets the value of a registered label to a whole number.
+     *
+     * @param handle handle returned by {@link #register(String)}
+     * @param value  new value
+     * @see #set(int, double)
+     */
+    public void set(int handle, long value) {
+        store(slots[handle], LONG, value);
+    }
+
+    /**
+     * Sets the value of a registered label to true or false.
+     *
+     * @param handle handle returned by {@link #register(String)}
+     * @param value  new value
+     * @see #set(int, double)
+     */
+    public void set(int handle, boolean value) {
+        store(slots[handle], BOOLEAN, value ? 1 : 0);
+    }
 
-        data[indexMap.get(identifier) + 1] = TAB + identifier + ": " + valueString;
+    /**
+     * Puts a label-value pair into the map without boxing or formatting the value. The label is registered the first
+     * time it is used.
+     *
+     * @param identifier label
+     * @param value      value
+     * @see #set(int, double)
+     */
+    public void putDouble(String identifier, double value) {
+        set(handle(identifier), value);
+    }
+
+    /**
+     * Puts a label and whole number into the map without boxing or formatting the value. The label is registered the
+     * first time it is used.
+     *
+     * @param identifier label
+     * @param value      value
+     * @see #set(int, long)
+     */
+    public void putLong(String identifier, long value) {
+        set(handle(identifier), value);
+    }
+
+    /**
+     * Puts a label and boolean into the map without boxing or formatting the value. The label is registered the first
+     * time it is used.
+     *
+     * @param identifier label
+     * @param value      value
+     * @see #set(int, boolean)
+     */
+    public void putBoolean(String identifier, boolean value) {
+        set(handle(identifier), value);
+    }
+
+    /**
+     * Gets a label's handle, registering the label if needed.
+     *
+     * @param identifier label
+     * @return handle
+     */
+    private int handle(String identifier) {
+        Integer handle = handleMap.get(identifier);
+        return handle != null ? handle : register(identifier);
+    }
+
+    /**
+     * Stores a value in a slot and flags it for formatting. A label should only be updated with one type at a time.
+     *
+     * @param slot value slot
+     * @param kind value type
+     * @param bits raw value
+     */
+    private void store(Slot slot, int kind, long bits) {
+        // Nothing to redraw if the value is the one already shown or about to be
+        if (slot.assigned && slot.bits == bits && slot.kind == kind)
+            return;
+
+        slot.kind = kind;
+        slot.bits = bits;
+        slot.assigned = true;
+        slot.stale = true;
+        pending = true;
+        markDirty();
+
+        UpdateListener listener = updateListener;
+
+        if (listener == null)
+            return;
+
+        if (kind == DOUBLE)
+            listener.valueSet(this, slot.label, Double.longBitsToDouble(bits));
+        else if (kind == LONG)
+            listener.valueSet(this, slot.label, bits);
+        else
+            listener.valueSet(this, slot.label, bits != 0);
     }
 
     /**
@@ -64,17 +286,109 @@ public class ValueMapTelemetry extends ParagraphTelemetry {
      */
     public void addDecimalFormat(String identifier, DecimalFormat formatter) {
         formatMap.put(identifier, formatter);
+
+        Integer handle = handleMap.get(identifier);
+        if (handle != null)
+            slots[handle].setFormat(formatter);
     }
 
     /**
-     * Resizes the data array to have an additional empty index at the end.
+     * Gets the contained data, first formatting any values that changed since the last call.
+     *
+     * @return data
      */
-    private void resize() {
-        String[] temp = new String[data.length + 1];
+    @Override
+    public String[] data() {
+        resolve();
+        return data;
+    }
+
+    /**
+     * Formats every value that changed since the last call and publishes all of their lines in one update. This is the
+     * only place value lines are published, so the lines formatted here are still the newest when they are published.
+     */
+    private synchronized void resolve() {
+        if (!pending)
+            return;
+
+        pending = false;
+        Slot[] current = slots;
+        int changed = 0;
+
+        if (changedLines.length < current.length) {
+            changedLines = new int[current.length];
+            changedText = new String[current.length];
+        }
+
+        for (Slot slot : current) {
+            // Clear the flag before reading so a concurrent set is caught next frame
+            if (!slot.stale)
+                continue;
+
+            slot.stale = false;
+            String line = format(slot, slot.kind, slot.bits);
+            changedLines[changed] = slot.line;
+            changedText[changed] = line;
+            changed++;
+        }
+
+        String[] lines, next;
+
+        do {
+            lines = data;
+            next = lines.clone();
 
-        for (int i = 0; i < data.length; i++)
-            temp[i] = data[i];
+            for (int i = 0; i < changed; i++)
+                next[changedLines[i]] = changedText[i];
+        } while (!compareAndSetData(lines, next));
+
+        for (int i = 0; i < changed; i++) {
+            compileLine(changedLines[i], changedText[i]);
+            changedText[i] = null;
+        }
+    }
+
+    /**
+     * Builds a label's line for a value. Must be called while holding the instance lock.
+     *
+     * @param slot value slot
+     * @param kind value type
+     * @param bits raw value
+     * @return line text
+     */
+    private String format(Slot slot, int kind, long bits) {
+        StringBuilder sb = lineBuilder;
+        sb.setLength(0);
+        sb.append(slot.prefix);
+
+        if (kind == BOOLEAN)
+            return sb.append(bits != 0).toString();
+
+        if (kind == TEXT)
+            return sb.append(slot.text).toString();
+
+        FixedPointFormat fixed = slot.fixedFormat;
+        DecimalFormat format = slot.format;
+
+        if (fixed != null) {
+            if (kind == LONG)
+                fixed.format(bits, sb);
+            else
+                fixed.format(Double.longBitsToDouble(bits), sb);
+        } else if (format != null) {
+            // DecimalFormat is not thread-safe
+            synchronized (format) {
+                if (kind == LONG)
+                    sb.append(format.format(bits));
+                else
+                    sb.append(format.format(Double.longBitsToDouble(bits)));
+            }
+        } else if (kind == LONG) {
+            sb.append(bits);
+        } else {
+            sb.append(Double.longBitsToDouble(bits));
+        }
 
-        data = temp;
+        return sb.toString();
     }
 }
@@ -1,12 +1,21 @@
 package onyx.telemetry.timestamp;
 
+import onyx.util.FixedPointFormat;
+
 import java.text.DecimalFormat;
 
 /**
  * A timestamp that formats the time with a decimal format and claps the resulting string in braces.
+ * <p>
+ * Plain fixed-point formats, such as {@code "000.00"}, are written digit by digit with a {@link FixedPointFormat}, so
+ * {@link #stamp(double, StringBuilder)} allocates nothing. Other formats fall back to the decimal format. Either way,
+ * stamps may be created from several threads at once.
  */
 public class FormatTimestamper implements Timestamper {
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
     protected DecimalFormat timestampFormat;
+    protected FixedPointFormat fixedFormat;
     protected String openBrace, closeBrace;
 
     /**
@@ -18,6 +27,21 @@ public class FormatTimestamper implements Timestamper {
      */
     public FormatTimestamper(DecimalFormat format, String open, String close) {
         timestampFormat = format;
+        fixedFormat = FixedPointFormat.of(format);
+        openBrace = open;
+        closeBrace = close;
+    }
+
+    /**
+     * Creates a new timestamper with a fixed-point format.
+     *
+     * @param integerDigits  minimum number of integer digits, padded with zeros
+     * @param fractionDigits number of fraction digits
+     * @param open           string preceding the stamp
+     * @param close          string succeeding the stamp
+     */
+    public FormatTimestamper(int integerDigits, int fractionDigits, String open, String close) {
+        fixedFormat = new FixedPointFormat(integerDigits, fractionDigits);
         openBrace = open;
         closeBrace = close;
     }
@@ -29,6 +53,40 @@ public class FormatTimestamper implements Timestamper {
      * @return timestamp text
      */
     public String stamp(double time) {
-        return openBrace + timestampFormat.format(time) + closeBrace;
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return stamp(time, sb).toString();
+    }
+
+    /**
+     * Appends a timestamp for a numeric time value.
+     *
+     * @param time numeric point in time
+     * @param out  destination
+     * @return the destination
+     */
+    @Override
+    public StringBuilder stamp(double time, StringBuilder out) {
+        out.append(openBrace);
+        formatTime(time, out);
+        return out.append(closeBrace);
+    }
+
+    /**
+     * Appends the formatted time value, without braces.
+     *
+     * @param time numeric point in time
+     * @param out  destination
+     */
+    protected void formatTime(double time, StringBuilder out) {
+        if (fixedFormat != null) {
+            fixedFormat.format(time, out);
+            return;
+        }
+
+        // Decimal formats keep internal state while formatting
+        synchronized (timestampFormat) {
+            out.append(timestampFormat.format(time));
+        }
     }
 }
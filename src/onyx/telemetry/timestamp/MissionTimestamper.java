@@ -19,15 +19,27 @@ public class MissionTimestamper extends FormatTimestamper {
     }
 
     /**
-     * Creates a timestamp string from a numeric time value.
+     * Creates a new timestamper with a fixed-point format.
+     *
+     * @param integerDigits  minimum number of integer digits, padded with zeros
+     * @param fractionDigits number of fraction digits
+     * @param open           string preceding the stamp
+     * @param close          string succeeding the stamp
+     */
+    public MissionTimestamper(int integerDigits, int fractionDigits, String open, String close) {
+        super(integerDigits, fractionDigits, open, close);
+    }
+
+    /**
+     * Appends the formatted time value in T+- form, without braces.
      *
      * @param time numeric point in time
-     * @return timestamp text
+     * @param out  destination
      */
     @Override
-    public String stamp(double time) {
-        StringBuilder sb = new StringBuilder(timestampFormat.format(time));
-        sb.insert(0, "T" + (time < 0 ? "" : "+"));
-        return openBrace + sb.toString() + closeBrace;
+    protected void formatTime(double time, StringBuilder out) {
+        // Negative times already carry their minus sign
+        out.append(time < 0 ? "T" : "T+");
+        super.formatTime(time, out);
     }
 }
@@ -12,4 +12,16 @@ public interface Timestamper {
      * @return timestamp text
      */
     public String stamp(double time);
+
+    /**
+     * Appends a new timestamp to a builder. Implementations that can write the stamp without building intermediate
+     * strings should override this.
+     *
+     * @param time numeric point in time
+     * @param out  destination
+     * @return the destination
+     */
+    public default StringBuilder stamp(double time, StringBuilder out) {
+        return out.append(stamp(time));
+    }
 }
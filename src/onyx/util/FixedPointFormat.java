@@ -0,0 +1,261 @@
+package onyx.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * A fast formatter for plain fixed-point numbers, such as those produced by the {@link DecimalFormat} pattern
+ * {@code "000.00"}: a minimum number of zero-padded integer digits, and a fraction with a minimum and maximum number of
+ * digits. Digits are written straight into a {@link StringBuilder}, so formatting allocates nothing.
+ * <p>
+ * Instances are immutable and may be shared between threads. Values are rounded by their exact binary value; only
+ * values within an ulp of a rounding tie take a slower exact path. {@link DecimalFormat} instead rounds the shortest
+ * decimal that reads back as the value, which only differs from the exact value past about the 16th significant digit.
+ * Values that would print more than {@value #SIGNIFICANT_DIGITS} significant digits, along with negative zero and values
+ * that are not finite, are therefore formatted by an equivalent {@link DecimalFormat}, so every value prints exactly as
+ * it would there.
+ */
+public class FixedPointFormat {
+    private static final long[] POWERS = new long[19];
+    // Significant digits a double always carries exactly, so the exact and shortest decimal round alike
+    private static final int SIGNIFICANT_DIGITS = 15;
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++)
+            POWERS[i] = POWERS[i - 1] * 10;
+    }
+
+    private final int integerDigits, minFractionDigits, maxFractionDigits;
+    private final RoundingMode rounding;
+    private final char zero, decimalSeparator, minus;
+    private final double limit;
+    // Formats the values digits cannot be computed for; shared, so used under its own lock
+    private final DecimalFormat fallback;
+
+    /**
+     * Creates a format with a fixed number of fraction digits that rounds half even, using the default locale's
+     * symbols.
+     *
+     * @param integerDigits  minimum number of integer digits, padded with zeros
+     * @param fractionDigits number of fraction digits
+     */
+    public FixedPointFormat(int integerDigits, int fractionDigits) {
+        this(integerDigits, fractionDigits, fractionDigits, RoundingMode.HALF_EVEN, new DecimalFormatSymbols());
+    }
+
+    /**
+     * Creates a format.
+     *
+     * @param integerDigits     minimum number of integer digits, padded with zeros
+     * @param minFractionDigits minimum number of fraction digits, padded with zeros
+     * @param maxFractionDigits maximum number of fraction digits; trailing zeros beyond the minimum are dropped
+     * @param rounding          {@link RoundingMode#HALF_EVEN}, {@link RoundingMode#HALF_UP} or
+     *                          {@link RoundingMode#HALF_DOWN}
+     * @param symbols           digit, separator and sign characters
+     */
+    public FixedPointFormat(int integerDigits, int minFractionDigits, int maxFractionDigits, RoundingMode rounding,
+                            DecimalFormatSymbols symbols) {
+        if (integerDigits < 0 || minFractionDigits < 0 || maxFractionDigits < minFractionDigits
+                || maxFractionDigits >= POWERS.length)
+            throw new IllegalArgumentException("Unsupported digit counts");
+
+        if (rounding != RoundingMode.HALF_EVEN && rounding != RoundingMode.HALF_UP && rounding != RoundingMode.HALF_DOWN)
+            throw new IllegalArgumentException("Unsupported rounding mode " + rounding);
+
+        this.integerDigits = integerDigits;
+        this.minFractionDigits = minFractionDigits;
+        this.maxFractionDigits = maxFractionDigits;
+        this.rounding = rounding;
+        zero = symbols.getZeroDigit();
+        decimalSeparator = symbols.getDecimalSeparator();
+        minus = symbols.getMinusSign();
+        limit = Long.MAX_VALUE / (double) POWERS[maxFractionDigits];
+
+        fallback = new DecimalFormat("0", symbols);
+        fallback.setGroupingUsed(false);
+        fallback.setMinimumIntegerDigits(integerDigits);
+        fallback.setMinimumFractionDigits(minFractionDigits);
+        fallback.setMaximumFractionDigits(maxFractionDigits);
+        fallback.setRoundingMode(rounding);
+    }
+
+    /**
+     * Creates a format equivalent to a decimal format, if it only uses features this class supports: no grouping,
+     * prefixes, suffixes, exponent or multiplier, and rounding to the nearest neighbor.
+     *
+     * @param format decimal format
+     * @return equivalent format, or null if the decimal format cannot be reproduced
+     */
+    public static FixedPointFormat of(DecimalFormat format) {
+        String positive = format.getPositivePrefix() + format.getPositiveSuffix();
+        String negative = format.getNegativeSuffix();
+        String minusSign = String.valueOf(format.getDecimalFormatSymbols().getMinusSign());
+
+        if (format.isGroupingUsed() || format.getMultiplier() != 1 || !positive.isEmpty() || !negative.isEmpty()
+                || !format.getNegativePrefix().equals(minusSign) || format.toPattern().indexOf('E') >= 0
+                || format.getMaximumFractionDigits() >= POWERS.length)
+            return null;
+
+        RoundingMode rounding = format.getRoundingMode();
+        if (rounding != RoundingMode.HALF_EVEN && rounding != RoundingMode.HALF_UP && rounding != RoundingMode.HALF_DOWN)
+            return null;
+
+        return new FixedPointFormat(format.getMinimumIntegerDigits(), format.getMinimumFractionDigits(),
+                format.getMaximumFractionDigits(), rounding, format.getDecimalFormatSymbols());
+    }
+
+    /**
+     * Appends a formatted value.
+     *
+     * @param value number to format
+     * @param out   destination
+     * @return the destination
+     */
+    public StringBuilder format(double value, StringBuilder out) {
+        // Negative zero keeps its sign in a decimal format, but compares equal to zero here
+        if (!(Math.abs(value) < limit) || (value == 0 && Double.doubleToRawLongBits(value) != 0))
+            return fallback(value, out);
+
+        long scaled = scale(Math.abs(value));
+
+        // Digits past the precision of a double are where the exact and the shortest decimal part ways
+        if (scaled >= POWERS[SIGNIFICANT_DIGITS])
+            return fallback(value, out);
+        long whole = scaled / POWERS[maxFractionDigits];
+        long fraction = scaled % POWERS[maxFractionDigits];
+
+        // Drop trailing fraction zeros down to the minimum
+        int fractionDigits = maxFractionDigits;
+        while (fractionDigits > minFractionDigits && fraction % 10 == 0) {
+            fraction /= 10;
+            fractionDigits--;
+        }
+
+        return append(value < 0, whole, fraction, fractionDigits, out);
+    }
+
+    /**
+     * Appends a value formatted by the equivalent decimal format.
+     *
+     * @param value number to format
+     * @param out   destination
+     * @return the destination
+     */
+    private StringBuilder fallback(double value, StringBuilder out) {
+        synchronized (fallback) {
+            return out.append(fallback.format(value));
+        }
+    }
+
+    /**
+     * Appends a formatted whole number. Unlike formatting it as a double, every digit is exact.
+     *
+     * @param value number to format
+     * @param out   destination
+     * @return the destination
+     */
+    public StringBuilder format(long value, StringBuilder out) {
+        // The one long without a positive counterpart already has more digits than any padding
+        if (value == Long.MIN_VALUE) {
+            out.append(value);
+
+            if (minFractionDigits > 0)
+                out.append(decimalSeparator);
+
+            for (int i = 0; i < minFractionDigits; i++)
+                out.append(zero);
+
+            return out;
+        }
+
+        return append(value < 0, Math.abs(value), 0, minFractionDigits, out);
+    }
+
+    /**
+     * Appends a number split into its sign, integer part and fraction digits.
+     *
+     * @param negative       whether or not to write a minus sign
+     * @param whole          integer part
+     * @param fraction       fraction digits, as a whole number
+     * @param fractionDigits number of fraction digits to write
+     * @param out            destination
+     * @return the destination
+     */
+    private StringBuilder append(boolean negative, long whole, long fraction, int fractionDigits, StringBuilder out) {
+        if (negative)
+            out.append(minus);
+
+        // A zero integer part is still written when there is nothing else to show
+        int wholeDigits = whole == 0 ? (fractionDigits == 0 ? 1 : 0) : digits(whole);
+
+        for (int i = wholeDigits; i < integerDigits; i++)
+            out.append(zero);
+
+        appendDigits(whole, wholeDigits, out);
+
+        if (fractionDigits > 0) {
+            out.append(decimalSeparator);
+            appendDigits(fraction, fractionDigits, out);
+        }
+
+        return out;
+    }
+
+    /**
+     * Formats a value into a new string.
+     *
+     * @param value number to format
+     * @return formatted value
+     */
+    public String format(double value) {
+        return format(value, new StringBuilder(integerDigits + maxFractionDigits + 2)).toString();
+    }
+
+    /**
+     * Scales a non-negative value by the fraction digits and rounds it to a whole number.
+     *
+     * @param value non-negative value
+     * @return rounded, scaled value
+     */
+    private long scale(double value) {
+        double scaled = value * POWERS[maxFractionDigits];
+        long floor = (long) scaled;
+        double remainder = scaled - floor;
+
+        // The product is off by at most half an ulp, so only near-ties can round the wrong way
+        if (Math.abs(remainder - 0.5) > Math.ulp(scaled))
+            return remainder < 0.5 ? floor : floor + 1;
+
+        return new BigDecimal(value).setScale(maxFractionDigits, rounding).unscaledValue().longValue();
+    }
+
+    /**
+     * Appends the lowest digits of a non-negative number, most significant first.
+     *
+     * @param number number to write
+     * @param count  number of digits to write
+     * @param out    destination
+     */
+    private void appendDigits(long number, int count, StringBuilder out) {
+        for (int i = count - 1; i >= 0; i--)
+            out.append((char) (zero + number / POWERS[i] % 10));
+    }
+
+    /**
+     * Counts the decimal digits of a positive number.
+     *
+     * @param number positive number
+     * @return number of digits
+     */
+    private static int digits(long number) {
+        int count = 1;
+
+        while (count < POWERS.length && number >= POWERS[count])
+            count++;
+
+        return count;
+    }
+}
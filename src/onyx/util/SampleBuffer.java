@@ -0,0 +1,129 @@
+package onyx.util;
+
+/**
+ * A buffer of (x, y) samples stored in primitive arrays. Samples are addressed by the absolute index at which they
+ * were appended. An unbounded buffer grows to hold every sample; a bounded buffer is a ring that keeps only the most
+ * recent samples, so appends are O(1) and memory is fixed.
+ * <p>
+ * One thread may append while any number of threads read: appends publish the new size last, so readers that call
+ * {@link #size()} first can read every retained sample below it without locking. Appends must come from one thread at
+ * a time.
+ */
+public class SampleBuffer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Held together so a reader never pairs the x array of one generation with the y array of another
+    private static class Columns {
+        final double[] xs, ys;
+
+        Columns(int capacity) {
+            xs = new double[capacity];
+            ys = new double[capacity];
+        }
+    }
+
+    private final boolean ring;
+    private volatile Columns columns;
+    private volatile long size;
+
+    /**
+     * Creates an empty, unbounded buffer.
+     */
+    public SampleBuffer() {
+        columns = new Columns(DEFAULT_CAPACITY);
+        ring = false;
+    }
+
+    /**
+     * Creates an empty ring buffer that retains at most some number of samples.
+     *
+     * @param capacity maximum number of retained samples
+     */
+    public SampleBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+
+        columns = new Columns(capacity);
+        ring = true;
+    }
+
+    /**
+     * Appends a sample. Unbounded buffers grow if necessary; ring buffers overwrite their oldest sample.
+     *
+     * @param x horizontal value
+     * @param y vertical value
+     */
+    public void add(double x, double y) {
+        Columns c = columns;
+        long n = size;
+        int slot;
+
+        if (ring) {
+            slot = (int) (n % c.xs.length);
+        } else {
+            if (n == c.xs.length) {
+                Columns grown = new Columns((int) n * 2);
+                System.arraycopy(c.xs, 0, grown.xs, 0, (int) n);
+                System.arraycopy(c.ys, 0, grown.ys, 0, (int) n);
+                columns = grown;
+                c = grown;
+            }
+
+            slot = (int) n;
+        }
+
+        c.xs[slot] = x;
+        c.ys[slot] = y;
+        size = n + 1;
+    }
+
+    /**
+     * Gets the number of samples ever appended, which is also the index after the newest sample.
+     *
+     * @return sample count
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the index of the oldest retained sample for a given size.
+     *
+     * @param size a value previously returned by {@link #size()}
+     * @return index of the oldest sample that may be read
+     */
+    public long start(long size) {
+        return ring ? Math.max(0, size - columns.xs.length) : 0;
+    }
+
+    /**
+     * Gets the maximum number of retained samples.
+     *
+     * @return capacity, or -1 if the buffer is unbounded
+     */
+    public int capacity() {
+        return ring ? columns.xs.length : -1;
+    }
+
+    /**
+     * Gets the horizontal value of a sample.
+     *
+     * @param index absolute sample index
+     * @return x value
+     */
+    public double x(long index) {
+        double[] xs = columns.xs;
+        return xs[(int) (index % xs.length)];
+    }
+
+    /**
+     * Gets the vertical value of a sample.
+     *
+     * @param index absolute sample index
+     * @return y value
+     */
+    public double y(long index) {
+        double[] ys = columns.ys;
+        return ys[(int) (index % ys.length)];
+    }
+}
@@ -0,0 +1,724 @@
+package onyx.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import onyx.graphics.Display;
+import onyx.graphics.FormattedText;
+import onyx.graphics.FrameListener;
+import onyx.graphics.FrameRenderer;
+import onyx.telemetry.GraphTelemetry;
+import onyx.telemetry.Telemetry;
+import onyx.telemetry.TextTelemetry;
+import onyx.util.SampleBuffer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves a display's telemetry to web browsers. The page at the server root draws the dashboard on a canvas from a
+ * stream of Server-Sent Events at {@code /events}.
+ * <p>
+ * Pixels are never sent. A viewer first receives a snapshot of every text and graph module; after that, each rendered
+ * frame that changed anything sends a delta holding only the text lines that differ from the previous frame and the
+ * graph points added since it, so bandwidth follows the rate of change rather than the frame size and rate. Deltas
+ * are encoded once per frame, on the rendering thread, and shared by every viewer. Other image telemetry is not shown.
+ * <p>
+ * Each viewer has a bounded queue of events. A viewer that falls behind has its queue dropped and is sent a fresh
+ * snapshot instead, so a slow browser never stalls rendering or other viewers.
+ * <p>
+ * Series from graphs with a capacity are sent with it, and the page drops its oldest points past that capacity, so a
+ * long-running page holds no more points than the graph does. Modules the renderer no longer has, or has replaced with
+ * one that is not served, are forgotten and viewers are told to stop drawing them.
+ * <p>
+ * The page is the {@code dashboard.html} resource next to this class, loaded from the classpath when the server is
+ * created; the build copies the non-Java files under {@code src} in with the classes.
+ */
+public class DashboardServer implements FrameListener, AutoCloseable {
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long KEEPALIVE_SECONDS = 15;
+
+    private final FrameRenderer renderer;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] page;
+    private final CopyOnWriteArrayList<Viewer> viewers = new CopyOnWriteArrayList<>();
+    private final AtomicLong bytesSent = new AtomicLong();
+    // Only touched by the rendering thread: what viewers were last told about each module
+    private final HashMap<String, ModuleState> states = new HashMap<>();
+    private final StringBuilder json = new StringBuilder();
+    private volatile boolean running;
+    private int frameWidth, frameHeight;
+
+    /**
+     * A connected browser.
+     */
+    private static class Viewer {
+        final ArrayBlockingQueue<byte[]> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        volatile boolean resync = true;
+    }
+
+    /**
+     * The state of a module as last sent to viewers.
+     */
+    private static class ModuleState {
+        final Telemetry telemetry;
+        int x, y;
+        String[] lines = new String[0];
+        double[] bounds;
+        HashMap<String, SampleBuffer> buffers = new HashMap<>();
+        HashMap<String, Long> counts = new HashMap<>();
+
+        /**
+         * Creates state for a module viewers have not seen.
+         *
+         * @param telemetry module
+         */
+        ModuleState(Telemetry telemetry) {
+            this.telemetry = telemetry;
+        }
+    }
+
+    /**
+     * Creates a stopped server for a display.
+     *
+     * @param display display to serve
+     * @param address address to listen on; port 0 picks a free port
+     * @throws IOException if the address could not be bound
+     */
+    public DashboardServer(Display display, InetSocketAddress address) throws IOException {
+        this(display.renderer(), address);
+    }
+
+    /**
+     * Creates a stopped server for a frame renderer. The server only sends updates while the renderer is rendering
+     * frames.
+     *
+     * @param renderer renderer to serve
+     * @param address  address to listen on; port 0 picks a free port
+     * @throws IOException if the address could not be bound
+     */
+    public DashboardServer(FrameRenderer renderer, InetSocketAddress address) throws IOException {
+        this.renderer = renderer;
+
+        try (InputStream in = DashboardServer.class.getResourceAsStream("dashboard.html")) {
+            if (in == null)
+                throw new IOException("Dashboard page resource is missing");
+
+            page = in.readAllBytes();
+        }
+
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Onyx dashboard server");
+            t.setDaemon(true);
+            return t;
+        });
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::servePage);
+        server.createContext("/events", this::serveEvents);
+    }
+
+    /**
+     * Starts serving and listening for frames. Does nothing if the server is already running.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        renderer.addFrameListener(this);
+        server.start();
+    }
+
+    /**
+     * Stops serving, disconnecting every viewer.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        renderer.removeFrameListener(this);
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the address the server is listening on.
+     *
+     * @return bound address
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Gets the number of connected viewers.
+     *
+     * @return viewer count
+     */
+    public int viewers() {
+        return viewers.size();
+    }
+
+    /**
+     * Gets the number of event bytes sent to all viewers.
+     *
+     * @return byte count
+     */
+    public long bytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Encodes the changes made by a frame and queues them for every viewer. Viewers that have just connected or fallen
+     * behind are queued a snapshot instead.
+     *
+     * @param frame   completed frame
+     * @param changed whether or not any part of the frame changed since the previous one
+     */
+    @Override
+    public void frameRendered(BufferedImage frame, boolean changed) {
+        if (viewers.isEmpty())
+            return;
+
+        boolean resize = frame.getWidth() != frameWidth || frame.getHeight() != frameHeight;
+        boolean resync = resize;
+
+        for (Viewer v : viewers)
+            resync |= v.resync;
+
+        if (!changed && !resync)
+            return;
+
+        frameWidth = frame.getWidth();
+        frameHeight = frame.getHeight();
+        byte[] delta = encodeDelta();
+        byte[] snapshot = resync ? encodeSnapshot() : null;
+
+        for (Viewer v : viewers) {
+            if (resize)
+                v.resync = true;
+
+            byte[] event = v.resync ? snapshot : delta;
+
+            if (event == null)
+                continue;
+
+            // A viewer too far behind to take the event starts over from a snapshot
+            if (v.events.offer(event)) {
+                v.resync = false;
+            } else {
+                v.events.clear();
+                v.resync = true;
+            }
+        }
+    }
+
+    /**
+     * Serves the dashboard page.
+     *
+     * @param exchange request
+     * @throws IOException if the response could not be sent
+     */
+    private void servePage(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+
+        try (exchange) {
+            if (!path.equals("/") && !path.equals("/index.html")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, page.length);
+            exchange.getResponseBody().write(page);
+        }
+    }
+
+    /**
+     * Streams events to a viewer until it disconnects or the server stops. Runs on a server thread per viewer.
+     *
+     * @param exchange request
+     * @throws IOException if the response headers could not be sent
+     */
+    private void serveEvents(HttpExchange exchange) throws IOException {
+        Viewer viewer = new Viewer();
+
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            byte[] keepalive = ":\n\n".getBytes(StandardCharsets.UTF_8);
+            viewers.add(viewer);
+
+            while (running) {
+                byte[] event = viewer.events.poll(KEEPALIVE_SECONDS, TimeUnit.SECONDS);
+
+                // Comments keep idle connections open and reveal viewers that have gone away
+                if (event == null)
+                    event = keepalive;
+
+                out.write(event);
+                out.flush();
+                bytesSent.addAndGet(event.length);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Viewer disconnected or server stopped
+        } finally {
+            viewers.remove(viewer);
+        }
+    }
+
+    /**
+     * Compares every module with what viewers were last sent and encodes the differences, updating the sent state.
+     *
+     * @return delta event, or null if nothing changed
+     */
+    private byte[] encodeDelta() {
+        json.setLength(0);
+        json.append("{\"modules\":[");
+        int start = json.length();
+        boolean changed = false;
+
+        for (String identifier : renderer.identifiers()) {
+            Telemetry tel = renderer.getTelemetry(identifier);
+
+            if (!(tel instanceof TextTelemetry) && !(tel instanceof GraphTelemetry))
+                continue;
+
+            ModuleState state = states.get(identifier);
+            boolean fresh = state == null || state.telemetry != tel;
+
+            if (fresh) {
+                state = new ModuleState(tel);
+                states.put(identifier, state);
+            }
+
+            int before = json.length();
+
+            if (before > start)
+                json.append(',');
+
+            int mark = json.length();
+            appendModule(identifier, state, fresh);
+
+            // Nothing was appended past the module header, so nothing changed
+            if (json.length() == mark)
+                json.setLength(before);
+        }
+
+        changed |= json.length() > start;
+        json.append("],\"removed\":[");
+        int removed = json.length();
+
+        // Modules no longer drawn by the renderer, or replaced by one that is not served, are dropped
+        for (Iterator<Map.Entry<String, ModuleState>> it = states.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, ModuleState> entry = it.next();
+
+            if (renderer.getTelemetry(entry.getKey()) == entry.getValue().telemetry)
+                continue;
+
+            if (json.length() > removed)
+                json.append(',');
+
+            appendString(entry.getKey());
+            it.remove();
+        }
+
+        changed |= json.length() > removed;
+
+        if (!changed)
+            return null;
+
+        json.append("]}");
+        return event("delta");
+    }
+
+    /**
+     * Encodes every module in full, from the sent state. The state must be up to date with the current frame.
+     *
+     * @return snapshot event
+     */
+    private byte[] encodeSnapshot() {
+        json.setLength(0);
+        json.append("{\"width\":").append(frameWidth)
+                .append(",\"height\":").append(frameHeight)
+                .append(",\"background\":");
+        appendColor(renderer.background());
+        json.append(",\"text\":");
+        appendColor(renderer.textColor());
+        Font font = renderer.font();
+        json.append(",\"font\":");
+        appendString(font.getFamily());
+        json.append(",\"fontSize\":").append(font.getSize())
+                .append(",\"lineHeight\":").append(renderer.lineHeight())
+                .append(",\"ascent\":").append(renderer.fontMetrics().getAscent())
+                .append(",\"modules\":[");
+
+        boolean first = true;
+
+        for (String identifier : renderer.identifiers()) {
+            ModuleState state = states.get(identifier);
+
+            if (state == null)
+                continue;
+
+            if (!first)
+                json.append(',');
+
+            first = false;
+            appendFull(identifier, state);
+        }
+
+        json.append("]}");
+        return event("snapshot");
+    }
+
+    /**
+     * Appends a module's changes since it was last sent, or nothing if it did not change.
+     *
+     * @param identifier module name
+     * @param state      sent state, updated to match the module
+     * @param fresh      whether or not viewers have never seen the module
+     */
+    private void appendModule(String identifier, ModuleState state, boolean fresh) {
+        Telemetry tel = state.telemetry;
+        int empty = json.length();
+        boolean moved = fresh || tel.x() != state.x || tel.y() != state.y;
+        state.x = tel.x();
+        state.y = tel.y();
+
+        beginModule(identifier, state, moved);
+        int header = json.length();
+
+        if (tel instanceof TextTelemetry) {
+            String[] lines = ((TextTelemetry) tel).data();
+            boolean any = false;
+
+            json.append(",\"length\":").append(lines.length).append(",\"lines\":[");
+
+            for (int i = 0; i < lines.length; i++) {
+                if (i < state.lines.length && Objects.equals(lines[i], state.lines[i]))
+                    continue;
+
+                if (any)
+                    json.append(',');
+
+                any = true;
+                json.append('[').append(i).append(',');
+                appendRuns((TextTelemetry) tel, i, lines[i]);
+                json.append(']');
+            }
+
+            json.append(']');
+
+            if (!any && lines.length == state.lines.length)
+                json.setLength(header);
+
+            state.lines = lines;
+        } else {
+            GraphTelemetry graph = (GraphTelemetry) tel;
+            double[] bounds = bounds(graph);
+
+            if (!Arrays.equals(bounds, state.bounds)) {
+                json.append(",\"bounds\":");
+                appendNumbers(bounds, 0, bounds.length);
+                state.bounds = bounds;
+            }
+
+            int series = json.length();
+            json.append(",\"series\":[");
+            boolean any = false;
+
+            for (GraphTelemetry.Series s : graph.series()) {
+                SampleBuffer points = s.points();
+                long size = points.size();
+                boolean reset = points != state.buffers.get(s.name());
+                long from = reset ? points.start(size) : Math.max(state.counts.get(s.name()), points.start(size));
+
+                if (!reset && from == size)
+                    continue;
+
+                if (any)
+                    json.append(',');
+
+                any = true;
+                appendSeries(s, points, from, size, reset);
+                state.buffers.put(s.name(), points);
+                state.counts.put(s.name(), size);
+            }
+
+            if (any)
+                json.append(']');
+            else
+                json.setLength(series);
+        }
+
+        // An unmoved, unchanged module is left out of the delta entirely
+        if (json.length() == header && !moved)
+            json.setLength(empty);
+        else
+            json.append('}');
+    }
+
+    /**
+     * Appends a module in full from its sent state.
+     *
+     * @param identifier module name
+     * @param state      sent state
+     */
+    private void appendFull(String identifier, ModuleState state) {
+        Telemetry tel = state.telemetry;
+        beginModule(identifier, state, true);
+
+        if (tel instanceof TextTelemetry) {
+            json.append(",\"length\":").append(state.lines.length).append(",\"lines\":[");
+
+            for (int i = 0; i < state.lines.length; i++) {
+                if (i > 0)
+                    json.append(',');
+
+                json.append('[').append(i).append(',');
+                appendRuns((TextTelemetry) tel, i, state.lines[i]);
+                json.append(']');
+            }
+
+            json.append(']');
+        } else {
+            GraphTelemetry graph = (GraphTelemetry) tel;
+            json.append(",\"bounds\":");
+            appendNumbers(state.bounds, 0, state.bounds.length);
+            json.append(",\"series\":[");
+            boolean first = true;
+
+            for (GraphTelemetry.Series s : graph.series()) {
+                SampleBuffer points = state.buffers.get(s.name());
+
+                if (points == null)
+                    continue;
+
+                if (!first)
+                    json.append(',');
+
+                first = false;
+                long size = state.counts.get(s.name());
+                appendSeries(s, points, points.start(size), size, true);
+            }
+
+            json.append(']');
+        }
+
+        json.append('}');
+    }
+
+    /**
+     * Appends the opening of a module object: its name and kind, and its placement if viewers need it.
+     *
+     * @param identifier module name
+     * @param state      sent state
+     * @param placement  whether or not to include position and size
+     */
+    private void beginModule(String identifier, ModuleState state, boolean placement) {
+        json.append("{\"id\":");
+        appendString(identifier);
+        json.append(",\"kind\":\"").append(state.telemetry instanceof GraphTelemetry ? "graph" : "text").append('"');
+
+        if (placement) {
+            json.append(",\"x\":").append(state.x).append(",\"y\":").append(state.y);
+
+            if (state.telemetry instanceof GraphTelemetry) {
+                Dimension plot = ((GraphTelemetry) state.telemetry).plotSize();
+                json.append(",\"w\":").append(plot.width).append(",\"h\":").append(plot.height);
+            }
+        }
+    }
+
+    /**
+     * Appends a series and a range of its points, flattened to alternating x and y values.
+     *
+     * @param s      series
+     * @param points series buffer
+     * @param from   index of the first point to send
+     * @param to     index after the last point to send
+     * @param reset  whether or not the points replace every point viewers have
+     */
+    private void appendSeries(GraphTelemetry.Series s, SampleBuffer points, long from, long to, boolean reset) {
+        json.append("{\"name\":");
+        appendString(s.name());
+        json.append(",\"color\":");
+        appendColor(s.color());
+        json.append(",\"connect\":").append(s.plotMode() == GraphTelemetry.PLOT_MODE_CONNECT)
+                .append(",\"reset\":").append(reset);
+
+        // The page keeps no more points than the graph does
+        if (points.capacity() >= 0)
+            json.append(",\"capacity\":").append(points.capacity());
+
+        json.append(",\"points\":[");
+
+        for (long i = from; i < to; i++) {
+            if (i > from)
+                json.append(',');
+
+            appendNumber(points.x(i));
+            json.append(',');
+            appendNumber(points.y(i));
+        }
+
+        json.append("]}");
+    }
+
+    /**
+     * Appends a line as an array of styled runs, each a text, color and bold flag. Uncoded lines are one run in the
+     * default color.
+     *
+     * @param tel   text telemetry
+     * @param index line index
+     * @param line  line text, or null for a blank line
+     */
+    private void appendRuns(TextTelemetry tel, int index, String line) {
+        json.append('[');
+
+        if (line == null) {
+            json.append(']');
+            return;
+        }
+
+        if (!tel.coded()) {
+            json.append('[');
+            appendString(line);
+            json.append(",null,false]]");
+            return;
+        }
+
+        FormattedText.Run[] runs = tel.formattedLine(index, line).runs();
+
+        for (int i = 0; i < runs.length; i++) {
+            if (i > 0)
+                json.append(',');
+
+            json.append('[');
+            appendString(runs[i].text);
+            json.append(',');
+            appendColor(runs[i].color);
+            json.append(',').append((runs[i].weight & Font.BOLD) != 0).append(']');
+        }
+
+        json.append(']');
+    }
+
+    /**
+     * Gets the bounds of a graph's axes.
+     *
+     * @param graph graph
+     * @return lower x, upper x, lower y and upper y
+     */
+    private static double[] bounds(GraphTelemetry graph) {
+        double[] x = graph.xAxisBounds(), y = graph.yAxisBounds();
+        return new double[]{x[0], x[1], y[0], y[1]};
+    }
+
+    /**
+     * Appends an array of numbers.
+     *
+     * @param values numbers
+     * @param from   index of the first number
+     * @param to     index after the last number
+     */
+    private void appendNumbers(double[] values, int from, int to) {
+        json.append('[');
+
+        for (int i = from; i < to; i++) {
+            if (i > from)
+                json.append(',');
+
+            appendNumber(values[i]);
+        }
+
+        json.append(']');
+    }
+
+    /**
+     * Appends a number; JSON has no infinities or NaN, so those are sent as null.
+     *
+     * @param value number
+     */
+    private void appendNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            json.append("null");
+        else if (value == (long) value)
+            json.append((long) value);
+        else
+            json.append(value);
+    }
+
+    /**
+     * Appends a color as a CSS hex string.
+     *
+     * @param color color, or null
+     */
+    private void appendColor(Color color) {
+        if (color == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append("\"#");
+        String hex = Integer.toHexString(color.getRGB() & 0xFFFFFF);
+
+        for (int i = hex.length(); i < 6; i++)
+            json.append('0');
+
+        json.append(hex).append('"');
+    }
+
+    /**
+     * Appends a quoted, escaped string.
+     *
+     * @param s string
+     */
+    private void appendString(String s) {
+        json.append('"');
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+
+        json.append('"');
+    }
+
+    /**
+     * Wraps the JSON built so far in a Server-Sent Event.
+     *
+     * @param name event name
+     * @return encoded event
+     */
+    private byte[] event(String name) {
+        return ("event: " + name + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+}